@@ -0,0 +1,125 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+
+import com.couchbase.mock.Bucket.BucketType;
+import com.couchbase.mock.BucketConfiguration;
+import com.couchbase.mock.CouchbaseMock;
+import com.couchbase.mock.JsonUtils;
+import com.google.gson.JsonObject;
+
+/**
+ * Connector connected to the cluster benchmarks run against. A CouchbaseMock is started the same way as FunctionalTestSuite does,
+ * unless system property benchmark.seedNodes points to a real cluster (required for N1QL, which the mock does not support).
+ * Bucket and password of a real cluster are read from benchmark.bucket and benchmark.password.
+ * @author manik
+ *
+ */
+final class BenchmarkCluster {
+	
+	static final String SEED_NODES_PROPERTY = "benchmark.seedNodes";
+	
+	private CouchbaseMock couchbaseMock;
+	
+	private CouchbaseConnectorConfig config;
+	
+	CouchbaseConnector start() throws Exception {
+		config = new CouchbaseConnectorConfig();
+		String seedNodes = System.getProperty(SEED_NODES_PROPERTY);
+		if (seedNodes == null) {
+			config.setBucketName("default");
+			config.setPassword("");
+			config.setEnsurePrimaryIndex(false);
+			couchbaseMock = createMock("default", "");
+			config.setBootstrapHttpDirectPort(couchbaseMock.getHttpPort());
+			config.setBootstrapCarrierDirectPort(getCarrierPort(couchbaseMock, "default"));
+			seedNodes = "127.0.0.1";
+		} else {
+			config.setBucketName(System.getProperty("benchmark.bucket", "default"));
+			config.setPassword(System.getProperty("benchmark.password", ""));
+			config.setBootstrapHttpDirectPort(8091);
+			config.setBootstrapCarrierDirectPort(11210);
+		}
+		config.connect(seedNodes);
+		
+		CouchbaseConnector connector = new CouchbaseConnector();
+		connector.setConfig(config);
+		return connector;
+	}
+	
+	boolean isMock() {
+		return couchbaseMock != null;
+	}
+	
+	void stop() {
+		if (config != null) {
+			config.disconnect();
+		}
+		if (couchbaseMock != null) {
+			couchbaseMock.stop();
+		}
+	}
+	
+	private static CouchbaseMock createMock(String name, String password) throws Exception {
+		BucketConfiguration bucketConfiguration = new BucketConfiguration();
+		bucketConfiguration.numNodes = 1;
+		bucketConfiguration.numReplicas = 1;
+		bucketConfiguration.numVBuckets = 1024;
+		bucketConfiguration.name = name;
+		bucketConfiguration.type = BucketType.COUCHBASE;
+		bucketConfiguration.password = password;
+		ArrayList<BucketConfiguration> configList = new ArrayList<BucketConfiguration>();
+		configList.add(bucketConfiguration);
+		CouchbaseMock couchbaseMock = new CouchbaseMock(0, configList);
+		couchbaseMock.start();
+		couchbaseMock.waitForStartup();
+		return couchbaseMock;
+	}
+	
+	private static int getCarrierPort(CouchbaseMock couchbaseMock, String bucket) throws Exception {
+		URIBuilder builder = new URIBuilder();
+		builder.setScheme("http").setHost("localhost").setPort(couchbaseMock.getHttpPort()).setPath("mock/get_mcports")
+				.setParameter("bucket", bucket);
+		HttpResponse response = HttpClientBuilder.create().build().execute(new HttpGet(builder.build()));
+		int status = response.getStatusLine().getStatusCode();
+		if (status < 200 || status > 300) {
+			throw new ClientProtocolException("Unexpected response status: " + status);
+		}
+		JsonObject respObject = JsonUtils.GSON.fromJson(EntityUtils.toString(response.getEntity()), JsonObject.class);
+		return respObject.getAsJsonArray("payload").get(0).getAsInt();
+	}
+	
+	/**
+	 * Builds document content of roughly given size, made of string fields and one nested object.
+	 * @param sizeKb approximate JSON size in kilobytes
+	 * @return document content
+	 */
+	static Map<String, Object> content(int sizeKb) {
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		Map<String, Object> address = new LinkedHashMap<String, Object>();
+		address.put("city", "Berlin");
+		address.put("state", "DE");
+		content.put("type", "user");
+		content.put("address", address);
+		int fields = Math.max(1, sizeKb * 1024 / 80);
+		for (int i = 0; i < fields; i++) {
+			content.put("field" + i, "value-" + i + "-0123456789012345678901234567890123456789012345678901234567");
+		}
+		return content;
+	}
+}
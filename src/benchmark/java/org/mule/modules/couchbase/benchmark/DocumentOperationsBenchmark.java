@@ -0,0 +1,101 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+
+/**
+ * Key-value processors of the connector, single threaded and with 8 threads sharing one connector, at several document sizes.
+ * The bucket lookup done by every processor is measured with 64 threads sharing one connector.
+ * Against CouchbaseMock the numbers mostly show connector and SDK overhead rather than server latency.
+ * @author manik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentOperationsBenchmark {
+	
+	private static final String ID = "benchmark-document";
+	
+	@Param({"1", "16", "128"})
+	public int documentSizeKb;
+	
+	private BenchmarkCluster cluster;
+	
+	private CouchbaseConnector connector;
+	
+	private JavaMapDocument document;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		cluster = new BenchmarkCluster();
+		connector = cluster.start();
+		document = new JavaMapDocument(ID, BenchmarkCluster.content(documentSizeKb));
+		connector.upsertDocument(null, document, PersistTo.NONE, ReplicateTo.NONE);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cluster.stop();
+	}
+	
+	@Benchmark
+	public JavaMapDocument getDocument() {
+		return connector.getDocument(null, ID, false, 0, false, 0);
+	}
+	
+	@Benchmark
+	public Object getDocumentContent() {
+		return connector.getDocument(null, ID, false, 0, false, 0).getContent();
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public JavaMapDocument getDocumentConcurrent() {
+		return connector.getDocument(null, ID, false, 0, false, 0);
+	}
+	
+	@Benchmark
+	public JavaMapDocument upsertDocument() {
+		return connector.upsertDocument(null, document, PersistTo.NONE, ReplicateTo.NONE);
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public JavaMapDocument upsertDocumentConcurrent() {
+		return connector.upsertDocument(null, document, PersistTo.NONE, ReplicateTo.NONE);
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public Bucket openBucket() {
+		return connector.openBucket();
+	}
+}
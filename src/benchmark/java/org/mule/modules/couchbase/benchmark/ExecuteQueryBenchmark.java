@@ -0,0 +1,86 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+
+/**
+ * N1QL queries through the connector, ad hoc and prepared. CouchbaseMock does not support N1QL, so this benchmark needs 
+ * a real cluster given with -Dbenchmark.seedNodes and fails in setup otherwise.
+ * @author manik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteQueryBenchmark {
+	
+	@Param({"false", "true"})
+	public boolean prepared;
+	
+	private BenchmarkCluster cluster;
+	
+	private CouchbaseConnector connector;
+	
+	private String query;
+	
+	private final List<Object> params = Collections.<Object>singletonList("user");
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		cluster = new BenchmarkCluster();
+		connector = cluster.start();
+		if (cluster.isMock()) {
+			cluster.stop();
+			throw new IllegalStateException("Set -D" + BenchmarkCluster.SEED_NODES_PROPERTY + " to run N1QL benchmarks, CouchbaseMock does not support N1QL.");
+		}
+		query = "SELECT META().id FROM `" + connector.getConfig().getBucketName() + "` WHERE type = $1 LIMIT 10";
+		for (int i = 0; i < 10; i++) {
+			connector.upsertDocument(null, new JavaMapDocument("benchmark-query-" + i, BenchmarkCluster.content(1)), PersistTo.NONE, ReplicateTo.NONE);
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cluster.stop();
+	}
+	
+	@Benchmark
+	public List<Map<String, Object>> executeQuery() {
+		return connector.executeQuery(null, query, params, prepared, null);
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public List<Map<String, Object>> executeQueryConcurrent() {
+		return connector.executeQuery(null, query, params, prepared, null);
+	}
+}
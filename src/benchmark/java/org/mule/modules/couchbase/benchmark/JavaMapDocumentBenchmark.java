@@ -0,0 +1,81 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.json.JsonObject;
+
+/**
+ * Conversions between {@link JsonDocument} and {@link JavaMapDocument}, and copies of documents. Run with -prof gc to see allocation per operation.
+ * @author manik
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaMapDocumentBenchmark {
+	
+	@Param({"1", "16", "128"})
+	public int documentSizeKb;
+	
+	private JsonDocument jsonDocument;
+	
+	private JavaMapDocument document;
+	
+	@Setup
+	public void setup() {
+		document = new JavaMapDocument("benchmark-document", BenchmarkCluster.content(documentSizeKb));
+		document.setCas(1l);
+		jsonDocument = JsonDocument.create(document.getId(), 0, JsonObject.from(document.getContent()), 1l);
+	}
+	
+	@Benchmark
+	public JavaMapDocument fromJsonDocument() {
+		return JavaMapDocument.fromJsonDocument(jsonDocument);
+	}
+	
+	@Benchmark
+	public Object fromJsonDocumentField() {
+		return JavaMapDocument.fromJsonDocument(jsonDocument).getField("type");
+	}
+	
+	@Benchmark
+	public Object fromJsonDocumentContent() {
+		return JavaMapDocument.fromJsonDocument(jsonDocument).getContent();
+	}
+	
+	@Benchmark
+	public JsonDocument toJsonDocument() {
+		return document.toJsonDocument();
+	}
+	
+	@Benchmark
+	public JavaMapDocument cloneDocument() {
+		return document.clone();
+	}
+	
+	@Benchmark
+	public JavaMapDocument cloneUnreadDocument() {
+		return JavaMapDocument.fromJsonDocument(jsonDocument).clone();
+	}
+}
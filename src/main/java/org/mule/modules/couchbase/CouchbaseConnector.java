@@ -4,9 +4,21 @@
  */
 package org.mule.modules.couchbase;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.inject.Inject;
 import javax.validation.constraints.Max;
@@ -22,20 +34,70 @@ import org.mule.api.annotations.display.Placement;
 import org.mule.api.annotations.display.Summary;
 import org.mule.api.annotations.param.Default;
 import org.mule.extension.annotations.param.Optional;
+import org.mule.modules.couchbase.cache.DocumentCache;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.cache.SingleFlight;
 import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+import org.mule.modules.couchbase.metrics.Operation;
+import org.mule.modules.couchbase.metrics.QueryStatementStatistics;
+import org.mule.modules.couchbase.metrics.TimedOperation;
+import org.mule.modules.couchbase.model.BulkGetResult;
+import org.mule.modules.couchbase.model.BulkWriteResult;
+import org.mule.modules.couchbase.model.DocumentWriteOutcome;
 import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.RawFormat;
+import org.mule.modules.couchbase.model.SubdocMutation;
+import org.mule.modules.couchbase.model.SubdocMutationType;
+import org.mule.modules.couchbase.model.SubdocResult;
+import org.mule.modules.couchbase.model.WriteMode;
+import org.mule.modules.couchbase.query.PreparedStatementCache;
+import org.mule.modules.couchbase.query.QueryResultIterator;
+import org.mule.modules.couchbase.retry.CasRetryMetrics;
+import org.mule.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.MessagingException;
 
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.subdoc.multi.Lookup;
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.Unpooled;
+import com.couchbase.client.core.message.kv.subdoc.multi.Mutation;
+import com.couchbase.client.java.AsyncBucket;
 import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.document.BinaryDocument;
+import com.couchbase.client.java.document.Document;
 import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.JsonLongDocument;
+import com.couchbase.client.java.document.RawJsonDocument;
 import com.couchbase.client.java.document.json.JsonArray;
 import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.CASMismatchException;
 import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.query.AsyncN1qlQueryResult;
+import com.couchbase.client.java.query.AsyncN1qlQueryRow;
+import com.couchbase.client.java.query.N1qlMetrics;
+import com.couchbase.client.java.query.N1qlParams;
 import com.couchbase.client.java.query.N1qlQuery;
 import com.couchbase.client.java.query.N1qlQueryResult;
 import com.couchbase.client.java.query.N1qlQueryRow;
+import com.couchbase.client.java.query.PrepareStatement;
+import com.couchbase.client.java.query.PreparedN1qlQuery;
+import com.couchbase.client.java.query.PreparedPayload;
+import com.couchbase.client.java.subdoc.DocumentFragment;
+import com.couchbase.client.java.subdoc.LookupInBuilder;
+import com.couchbase.client.java.subdoc.MutateInBuilder;
+
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Actions;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.observables.ConnectableObservable;
+import rx.schedulers.Schedulers;
 
 @Connector(name="couchbasedb", friendlyName="Couchbase DB",
 			minMuleVersion="3.5.3",keywords="Couchbase, Database",
@@ -43,6 +105,8 @@ import com.couchbase.client.java.query.N1qlQueryRow;
 public class CouchbaseConnector{
 	
 	private Logger LOG = LoggerFactory.getLogger(CouchbaseConnector.class); 
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     @Config
     CouchbaseConnectorConfig config;
@@ -70,8 +134,41 @@ public class CouchbaseConnector{
     	return config.openBucket();
     }
     
+    /**
+     * Removes the document from near and off-heap caches after it was written through this connector.
+     * @param id document id
+     */
+    private void evictCached(String id){
+    	DocumentCache cache = config.getDocumentCache();
+    	if(cache != null) cache.invalidate(id);
+    	OffHeapDocumentCache offHeapCache = config.getOffHeapDocumentCache();
+    	if(offHeapCache != null) offHeapCache.invalidate(id);
+    }
+    
+    private static String idOf(JavaMapDocument javaMapDocument){
+    	return javaMapDocument == null ? null : javaMapDocument.getId();
+    }
+    
+    /**
+     * @return {@link SingleFlight} of the bucket sharing in-flight gets of the same id when Coalesce Concurrent Gets is enabled, with its request and coalesced counters.
+     */
+    public SingleFlight<RawJsonDocument> getCoalescedGets(){
+    	return config.getCoalescedGets();
+    }
+    
+    /**
+     * @return {@link PreparedStatementCache} of the config used by queries run as prepared statements, with its hit and miss counters.
+     */
+    public PreparedStatementCache getPreparedStatementCache(){
+    	return config.getPreparedStatementCache();
+    }
+    
     /**
      * This method retrieves document with given id from couchbase database. It can optionally lock and/or refresh the expiration time of document.
+     * If near cache is enabled on the config, documents read without locking or refreshing expiration time are served from the cache.
+     * If off-heap cache is enabled, it is consulted next and documents are read from database as raw JSON to be stored in it.
+     * If Coalesce Concurrent Gets is enabled, concurrent plain reads of the same id missing the caches share one request to database, 
+     * also across configs of the same bucket.
      * @param muleEvent
      * @param id Unique identifier of document
      * @param lockDocument
@@ -84,12 +181,35 @@ public class CouchbaseConnector{
      * @see Bucket#getAndTouch(com.couchbase.client.java.document.Document)
      */
     @Processor(friendlyName="Get Document")
-    public JavaMapDocument getDocument(MuleEvent muleEvent, String id, 
-    		@Placement(group="Document Locking (pessimistic)") @Default("false") boolean lockDocument,
-    		@Placement(group="Document Locking (pessimistic)") @Max(30) @Min(0) @Summary("Define seconds for which document should be write-locked. This creates pissimistic locking. Read more on couchbase documentation.") @Default("15") int lockDuration,
-    		@Placement(group="Refresh Expiration Time") @Default("false") boolean refreshExpirationTime,
+    public JavaMapDocument getDocument(MuleEvent muleEvent, final String id, 
+    		@Placement(group="Document Locking (pessimistic)") @Default("false") final boolean lockDocument,
+    		@Placement(group="Document Locking (pessimistic)") @Max(30) @Min(0) @Summary("Define seconds for which document should be write-locked. This creates pissimistic locking. Read more on couchbase documentation.") @Default("15") final int lockDuration,
+    		@Placement(group="Refresh Expiration Time") @Default("false") final boolean refreshExpirationTime,
     		@Placement(group="Refresh Expiration Time") @Summary("Time in seconds. If you specify an expiration time greater than 30 days in seconds (60 seconds * 60 minutes * 24 hours * 30 days = 2,592,000 seconds) it is considered an absolute time stamp instead of a relative one") 
-    					@Default("0") int refreshTime){
+    					@Default("0") final int refreshTime){
+   		
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, RuntimeException>(Operation.GET, id, null) {
+   			@Override
+   			protected JavaMapDocument run() {
+   				return payload(readDocument(id, lockDocument, lockDuration, refreshExpirationTime, refreshTime));
+   			}
+   		});
+    }
+   	
+    private JavaMapDocument readDocument(String id, boolean lockDocument, int lockDuration, boolean refreshExpirationTime, int refreshTime){
+   		final DocumentCache cache = config.getDocumentCache();
+   		final boolean cacheable = cache != null && !lockDocument && !refreshExpirationTime;
+   		
+   		long readStamp = 0;
+   		if(cacheable){
+   			JavaMapDocument cached = cache.get(id);
+   			if(cached != null) return cached;
+   			readStamp = cache.readStamp();
+   		}
+   		
+   		if(!lockDocument && !refreshExpirationTime && (config.getOffHeapDocumentCache() != null || config.isCoalesceGets())){
+   			return readRawDocument(id, cacheable ? cache : null, readStamp, config.getOffHeapDocumentCache());
+   		}
    		
    		Bucket bucket = openBucket();
 		
@@ -98,8 +218,10 @@ public class CouchbaseConnector{
 		if(lockDocument){
 			if(refreshExpirationTime) bucket.touch(id, refreshTime);
    			document = bucket.getAndLock(id, lockDuration);
+   			evictCached(id);
    		} else if (refreshExpirationTime) {
    			document = bucket.getAndTouch(id, refreshTime);
+   			evictCached(id);
    		} else {
    			document =  bucket.get(id);
    		}
@@ -108,79 +230,715 @@ public class CouchbaseConnector{
 			return null;
 		} else {
 			JavaMapDocument doc = JavaMapDocument.fromJsonDocument(document);
+			if(cacheable) cache.put(doc, readStamp);
 			return doc;
 		}
-		
+    }
+   	
+    /**
+     * Reads the document as raw JSON through the off-heap cache, if enabled. A read from database is shared with concurrent reads of the same id 
+     * if Coalesce Concurrent Gets is enabled, so the caller running it caches the document with read stamps taken right before it.
+     */
+    private JavaMapDocument readRawDocument(String id, DocumentCache cache, long readStamp, OffHeapDocumentCache offHeapCache){
+    	if(offHeapCache != null){
+    		JavaMapDocument cached = offHeapCache.get(id);
+    		if(cached != null){
+    			if(cache != null) cache.put(cached, readStamp);
+    			return cached;
+    		}
+    	}
+    	
+    	RawDocumentRead read = new RawDocumentRead(id, cache, offHeapCache);
+    	RawJsonDocument raw = config.isCoalesceGets() ? config.getCoalescedGets().execute(id, read) : read.call();
+    	return raw == null ? null : JavaMapDocument.fromRawJson(id, raw.cas(), raw.expiry(), raw.content());
+    }
+    
+    private final class RawDocumentRead implements Callable<RawJsonDocument> {
+    	
+    	private final String id;
+    	
+    	private final DocumentCache cache;
+    	
+    	private final OffHeapDocumentCache offHeapCache;
+    	
+    	RawDocumentRead(String id, DocumentCache cache, OffHeapDocumentCache offHeapCache) {
+    		this.id = id;
+    		this.cache = cache;
+    		this.offHeapCache = offHeapCache;
+    	}
+    	
+    	@Override
+    	public RawJsonDocument call() {
+    		long readStamp = cache == null ? 0 : cache.readStamp();
+    		long offHeapReadStamp = offHeapCache == null ? 0 : offHeapCache.readStamp();
+    		RawJsonDocument raw = openBucket().get(id, RawJsonDocument.class);
+    		if(raw != null){
+    			if(offHeapCache != null) offHeapCache.put(id, raw.content().getBytes(UTF_8), raw.cas(), raw.expiry(), offHeapReadStamp);
+    			if(cache != null) cache.put(JavaMapDocument.fromRawJson(id, raw.cas(), raw.expiry(), raw.content()), readStamp);
+    		}
+    		return raw;
+    	}
+    }
+   	
+    /**
+     * This method retrieves all documents for given ids from couchbase database in a single pipelined batch. Gets are issued through the asynchronous bucket API 
+     * with at most maxConcurrency requests in flight, instead of one blocking round-trip per id.
+     * @param muleEvent
+     * @param ids {@link List} of unique identifiers of documents. Duplicate ids are fetched only once.
+     * @param maxConcurrency Maximum number of get requests in flight at the same time.
+     * @param batchTimeout Time in milliseconds within which the whole batch must complete.
+     * @return {@link BulkGetResult} containing found documents keyed by id in requested order and the ids that do not exist in database.
+     * @see com.couchbase.client.java.AsyncBucket#get(String)
+     */
+    @Processor(friendlyName="Get Documents (bulk)")
+    public BulkGetResult getDocuments(MuleEvent muleEvent, @Placement(group="Documents to Get") @FriendlyName("Document IDs") @Summary("Specify the list of document ids to be retrieved.") final List<String> ids,
+    		@Placement(group="Batch Settings") @Min(1) @Summary("Maximum number of get requests sent to the cluster at the same time.") @Default("64") final int maxConcurrency,
+    		@Placement(group="Batch Settings") @Min(1) @Summary("Time in milliseconds within which the whole batch must complete.") @Default("10000") final long batchTimeout){
+   		
+   		return config.getMetrics().time(new TimedOperation<BulkGetResult, RuntimeException>(Operation.GET_BULK, null, null) {
+   			@Override
+   			protected BulkGetResult run() {
+   				final AsyncBucket asyncBucket = openBucket().async();
+   			
+   				List<String> uniqueIds = new ArrayList<String>(new LinkedHashSet<String>(ids));
+   			
+   				List<JsonDocument> documents = Observable.from(uniqueIds)
+   						.flatMap(new Func1<String, Observable<JsonDocument>>() {
+   							@Override
+   							public Observable<JsonDocument> call(String id) {
+   								return asyncBucket.get(id);
+   							}
+   						}, maxConcurrency)
+   						.toList()
+   						.timeout(batchTimeout, TimeUnit.MILLISECONDS)
+   						.toBlocking()
+   						.single();
+   			
+   				Map<String, JsonDocument> found = new HashMap<String, JsonDocument>();
+   				for (JsonDocument document : documents) {
+   					found.put(document.id(), document);
+   				}
+   			
+   				BulkGetResult result = new BulkGetResult();
+   				for (String id : uniqueIds) {
+   					JsonDocument document = found.get(id);
+   					if (document == null) {
+   						result.getMissingIds().add(id);
+   					} else {
+   						result.getDocuments().put(id, JavaMapDocument.fromJsonDocument(document));
+   					}
+   				}
+   			
+   				return result;
+   			}
+   		});
     }
    	
    	/**
    	 * This method update/inserts the JSON document for given id into couchbase database.
    	 * @param muleEvent
    	 * @param javaMapDocument {@link JavaMapDocument} containing document id and content to be upserted in database.
+   	 * @param persistTo {@link PersistTo} durability requirement, NONE does not wait for persistence.
+   	 * @param replicateTo {@link ReplicateTo} durability requirement, NONE does not wait for replication.
    	 * @return {@link JavaMapDocument} containing document id, cas, expiry and content from database.
    	 * @see com.couchbase.client.java.Bucket#upsert(com.couchbase.client.java.document.Document)
    	 */
    	@Processor(friendlyName="UpSert Document")
-   	public JavaMapDocument upsertDocument(MuleEvent muleEvent, @Placement(group="Document to upsert") @FriendlyName("Document") @Summary("Specify the document to be upserted.") JavaMapDocument javaMapDocument){
+   	public JavaMapDocument upsertDocument(MuleEvent muleEvent, @Placement(group="Document to upsert") @FriendlyName("Document") @Summary("Specify the document to be upserted.") final JavaMapDocument javaMapDocument,
+   			@Placement(group="Durability") @FriendlyName("Persist To") @Summary("Number of nodes the document must be persisted to before the write completes.") @Default("NONE") final PersistTo persistTo,
+   			@Placement(group="Durability") @FriendlyName("Replicate To") @Summary("Number of replicas the document must be replicated to before the write completes.") @Default("NONE") final ReplicateTo replicateTo){
    		
-   		Bucket bucket = openBucket();
-		
-		JsonDocument document = javaMapDocument.toJsonDocument();
-		
-		document = bucket.upsert(document);
-		
-		JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
-   		
-   		return returnDocument;
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, RuntimeException>(Operation.UPSERT, idOf(javaMapDocument), javaMapDocument) {
+   			@Override
+   			protected JavaMapDocument run() {
+   				Bucket bucket = openBucket();
+   			
+   				JsonDocument document = javaMapDocument.toJsonDocument();
+   			
+   				document = bucket.upsert(document, persistTo, replicateTo);
+   				evictCached(document.id());
+   			
+   				JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
+   			
+   				return returnDocument;
+   			}
+   		});
    	}
    	
    	/**
    	 * This method tries to insert the JSON document for given id into couchbase database. It will throw an exception if document with given id already exists in database.
    	 * @param muleEvent
    	 * @param javaMapDocument {@link JavaMapDocument} containing document id and content to be inserted in database.
+   	 * @param persistTo {@link PersistTo} durability requirement, NONE does not wait for persistence.
+   	 * @param replicateTo {@link ReplicateTo} durability requirement, NONE does not wait for replication.
    	 * @return {@link JavaMapDocument} containing document id, cas, expiry and content from database.
    	 * @see com.couchbase.client.java.Bucket#insert(com.couchbase.client.java.document.Document)
    	 */
    	@Processor(friendlyName="Insert Document")
-   	public JavaMapDocument insertDocument(MuleEvent muleEvent, @Placement(group="Document to Insert") @FriendlyName("Document") @Summary("Specify the document to be inserted.") JavaMapDocument javaMapDocument){
-   		
-   		Bucket bucket = openBucket();
-		
-		JsonDocument document = javaMapDocument.toJsonDocument();
-		
-		document = bucket.insert(document);
-		
-		JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
-   		
-   		return returnDocument;
+   	public JavaMapDocument insertDocument(MuleEvent muleEvent, @Placement(group="Document to Insert") @FriendlyName("Document") @Summary("Specify the document to be inserted.") final JavaMapDocument javaMapDocument,
+   			@Placement(group="Durability") @FriendlyName("Persist To") @Summary("Number of nodes the document must be persisted to before the write completes.") @Default("NONE") final PersistTo persistTo,
+   			@Placement(group="Durability") @FriendlyName("Replicate To") @Summary("Number of replicas the document must be replicated to before the write completes.") @Default("NONE") final ReplicateTo replicateTo){
    		
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, RuntimeException>(Operation.INSERT, idOf(javaMapDocument), javaMapDocument) {
+   			@Override
+   			protected JavaMapDocument run() {
+   				Bucket bucket = openBucket();
+   			
+   				JsonDocument document = javaMapDocument.toJsonDocument();
+   			
+   				document = bucket.insert(document, persistTo, replicateTo);
+   				evictCached(document.id());
+   			
+   				JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
+   			
+   				return returnDocument;
+   			}
+   		});
    	}
    	
    	/**
    	 * This method tries to update an existing JSON document for given id into couchbase database. It will throw an exception if document with given id Does not exist.
+   	 * If document CAS is set, update only succeeds if it matches the CAS stored in database.
+   	 * With retry on CAS mismatch, a mismatching update reads the latest document, applies the change again and retries after a jittered exponential backoff.
+   	 * The change is either given content merged over the latest content, or the result of retry expression evaluated with the latest document in flowVars.currentDocument. 
+   	 * The flow variable is removed once the expression has been evaluated.
    	 * 
    	 * @param muleEvent
    	 * @param javaMapDocument {@link JavaMapDocument} containing document id and content to be updated in database.
+   	 * @param persistTo {@link PersistTo} durability requirement, NONE does not wait for persistence.
+   	 * @param replicateTo {@link ReplicateTo} durability requirement, NONE does not wait for replication.
+   	 * @param retryOnCasMismatch Retry the update against the latest document when CAS does not match.
+   	 * @param maxRetries Maximum number of retries, after which {@link CASMismatchException} is raised. With 0 the first mismatch is raised without being counted as exhausted.
+   	 * @param retryBackoff Backoff before first retry in milliseconds, doubled with every retry.
+   	 * @param retryExpression Expression returning new content {@link Map} or {@link JavaMapDocument} from flowVars.currentDocument. If not set, given content is merged over the latest content.
    	 * @return {@link JavaMapDocument} containing document id, cas, expiry and content from database.
    	 * @see com.couchbase.client.java.Bucket#replace(com.couchbase.client.java.document.Document)
+   	 * @see #getCasRetryMetrics()
    	 */
    	@Processor(friendlyName="Update Document")
-   	public JavaMapDocument updateDocument(MuleEvent muleEvent, @Placement(group="Document to Update") @FriendlyName("Document") @Summary("Specify the document to be updated.") JavaMapDocument javaMapDocument){
+   	public JavaMapDocument updateDocument(MuleEvent muleEvent, @Placement(group="Document to Update") @FriendlyName("Document") @Summary("Specify the document to be updated.") final JavaMapDocument javaMapDocument,
+   			@Placement(group="Durability") @FriendlyName("Persist To") @Summary("Number of nodes the document must be persisted to before the write completes.") @Default("NONE") final PersistTo persistTo,
+   			@Placement(group="Durability") @FriendlyName("Replicate To") @Summary("Number of replicas the document must be replicated to before the write completes.") @Default("NONE") final ReplicateTo replicateTo,
+   			@Placement(group="CAS Retry") @FriendlyName("Retry on CAS Mismatch") @Default("false") final boolean retryOnCasMismatch,
+   			@Placement(group="CAS Retry") @FriendlyName("Max Retries") @Min(0) @Default("5") final int maxRetries,
+   			@Placement(group="CAS Retry") @FriendlyName("Initial Backoff (ms)") @Min(0) @Default("10") final long retryBackoff,
+   			@Placement(group="CAS Retry") @Optional @FriendlyName("Retry Expression") @Summary("Returns new content Map or document from flowVars.currentDocument. Leave empty to merge given content over the latest content.") final String retryExpression){
    		
-   		Bucket bucket = openBucket();
-		
-		JsonDocument document = javaMapDocument.toJsonDocument();
-		
-		if(!bucket.exists(document.id())) {
-			throw new DocumentDoesNotExistException("Document with id "+ document.id() +" does not exist.");
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, RuntimeException>(Operation.UPDATE, idOf(javaMapDocument), javaMapDocument) {
+   			@Override
+   			protected JavaMapDocument run() {
+   				int attempt = 0;
+   				Bucket bucket = openBucket();
+			
+				JsonDocument document = javaMapDocument.toJsonDocument();
+				CasRetryMetrics casRetryMetrics = config.getCasRetryMetrics();
+			
+				while(true){
+					try {
+						document = bucket.replace(document, persistTo, replicateTo);
+						if(attempt > 0) casRetryMetrics.succeededAfterRetry();
+						break;
+					} catch (DocumentDoesNotExistException notExists) {
+						throw new DocumentDoesNotExistException("Document with id "+ document.id() +" does not exist.", notExists);
+					} catch (CASMismatchException mismatch) {
+						if(!retryOnCasMismatch) throw mismatch;
+						if(attempt >= maxRetries){
+							if(attempt > 0) casRetryMetrics.exhausted();
+							LOG.warn("Couchbase Update: CAS of document {} still mismatching after {} retries.", document.id(), attempt);
+							throw mismatch;
+						}
+						attempt++;
+						retries(attempt);
+						pause(casRetryMetrics.retry(attempt, retryBackoff), mismatch);
+					
+						JsonDocument latest = bucket.get(document.id());
+						if(latest == null) throw new DocumentDoesNotExistException("Document with id "+ document.id() +" does not exist.");
+						document = reapply(muleEvent, javaMapDocument, JavaMapDocument.fromJsonDocument(latest), retryExpression).toJsonDocument();
+					}
+				}
+				evictCached(document.id());
+			
+				JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
+   			
+   				return returnDocument;
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * @return {@link CasRetryMetrics} of the config, counting updates retried after a CAS mismatch.
+   	 */
+   	public CasRetryMetrics getCasRetryMetrics(){
+   		return config.getCasRetryMetrics();
+   	}
+   	
+   	private static void pause(long millis, CASMismatchException mismatch){
+   		if(millis <= 0) return;
+   		try {
+   			Thread.sleep(millis);
+   		} catch (InterruptedException e) {
+   			Thread.currentThread().interrupt();
+   			throw mismatch;
+   		}
+   	}
+   	
+   	/**
+   	 * Applies the requested change again on the latest version of the document.
+   	 */
+   	@SuppressWarnings("unchecked")
+   	private JavaMapDocument reapply(MuleEvent muleEvent, JavaMapDocument requested, JavaMapDocument latest, String retryExpression){
+   		JavaMapDocument updated;
+   		if(retryExpression == null || retryExpression.trim().isEmpty()){
+   			updated = latest;
+   			if(requested.getContent() != null) updated.getContent().putAll(requested.getContent());
+   		} else {
+   			Object result;
+   			muleEvent.setFlowVariable("currentDocument", latest);
+   			try {
+   				result = muleContext.getExpressionManager().evaluate(retryExpression, muleEvent);
+   			} finally {
+   				muleEvent.removeFlowVariable("currentDocument");
+   			}
+   			if(result instanceof JavaMapDocument){
+   				updated = (JavaMapDocument) result;
+   			} else if (result instanceof Map) {
+   				updated = new JavaMapDocument(latest.getId(), (Map<String, Object>) result);
+   			} else {
+   				throw new IllegalArgumentException("Retry expression must return a Map or JavaMapDocument but returned " + (result == null ? null : result.getClass().getName()));
+   			}
+   		}
+   		updated.setId(requested.getId());
+   		updated.setExpiry(requested.getExpiry());
+   		updated.setCas(latest.getCas());
+   		return updated;
+   	}
+   	
+   	/**
+   	 * This method writes all given documents into couchbase database in a single pipelined batch, using the insert, upsert or replace semantics of the selected write mode.
+   	 * Writes are issued through the asynchronous bucket API with at most maxInFlight requests outstanding. A failing document does not fail the batch, 
+   	 * its exception is reported in the returned outcome instead. Documents not written when the batch timeout elapses fail with a {@link TimeoutException}, 
+   	 * while outcomes of the documents already written are returned.
+   	 * @param muleEvent
+   	 * @param documents {@link List} of {@link JavaMapDocument} containing document id and content to be written in database.
+   	 * @param writeMode {@link WriteMode} to apply to every document.
+   	 * @param persistTo {@link PersistTo} durability requirement of every document. Durability of all documents in flight is observed concurrently.
+   	 * @param replicateTo {@link ReplicateTo} durability requirement of every document.
+   	 * @param maxInFlight Maximum number of write requests sent to the cluster at the same time.
+   	 * @param batchTimeout Time in milliseconds within which the whole batch must complete.
+   	 * @return {@link BulkWriteResult} containing new CAS or the exception for every document, in submission order.
+   	 * @see com.couchbase.client.java.AsyncBucket#insert(com.couchbase.client.java.document.Document)
+   	 * @see com.couchbase.client.java.AsyncBucket#upsert(com.couchbase.client.java.document.Document)
+   	 * @see com.couchbase.client.java.AsyncBucket#replace(com.couchbase.client.java.document.Document)
+   	 */
+   	@Processor(friendlyName="Write Documents (bulk)")
+   	public BulkWriteResult writeDocuments(MuleEvent muleEvent, @Placement(group="Documents to Write") @FriendlyName("Documents") @Summary("Specify the list of documents to be written.") final List<JavaMapDocument> documents,
+   			@Placement(group="Documents to Write") @Summary("Insert fails for existing documents, replace fails for missing documents.") @Default("UPSERT") final WriteMode writeMode,
+   			@Placement(group="Durability") @FriendlyName("Persist To") @Summary("Number of nodes every document must be persisted to before its write completes.") @Default("NONE") final PersistTo persistTo,
+   			@Placement(group="Durability") @FriendlyName("Replicate To") @Summary("Number of replicas every document must be replicated to before its write completes.") @Default("NONE") final ReplicateTo replicateTo,
+   			@Placement(group="Batch Settings") @Min(1) @Summary("Maximum number of write requests sent to the cluster at the same time.") @Default("64") final int maxInFlight,
+   			@Placement(group="Batch Settings") @Min(1) @Summary("Time in milliseconds within which the whole batch must complete.") @Default("30000") final long batchTimeout){
+   		
+   		return config.getMetrics().time(new TimedOperation<BulkWriteResult, RuntimeException>(Operation.WRITE_BULK, null, null) {
+   			@Override
+   			protected BulkWriteResult run() {
+   				final AsyncBucket asyncBucket = openBucket().async();
+   				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+   			
+   				List<DocumentWriteOutcome> outcomes = Observable.range(0, documents.size())
+   						.flatMap(new Func1<Integer, Observable<DocumentWriteOutcome>>() {
+   							@Override
+   							public Observable<DocumentWriteOutcome> call(final Integer index) {
+   								final JavaMapDocument javaMapDocument = documents.get(index);
+   								long remaining = deadline - System.nanoTime();
+   								Observable<JsonDocument> written;
+   								try {
+   									written = remaining > 0 ? write(asyncBucket, writeMode, javaMapDocument.toJsonDocument(), persistTo, replicateTo).timeout(remaining, TimeUnit.NANOSECONDS)
+   											: Observable.<JsonDocument>error(new TimeoutException("Batch timeout of " + batchTimeout + " ms elapsed before document " + javaMapDocument.getId() + " was written."));
+   								} catch (Exception e) {
+   									written = Observable.error(e);
+   								}
+   								return written.map(new Func1<JsonDocument, DocumentWriteOutcome>() {
+   									@Override
+   									public DocumentWriteOutcome call(JsonDocument document) {
+   										return DocumentWriteOutcome.success(index, document.id(), document.cas());
+   									}
+   								}).onErrorReturn(new Func1<Throwable, DocumentWriteOutcome>() {
+   									@Override
+   									public DocumentWriteOutcome call(Throwable e) {
+   										return DocumentWriteOutcome.failure(index, javaMapDocument.getId(), e);
+   									}
+   								});
+   							}
+   						}, maxInFlight)
+   						.toList()
+   						.toBlocking()
+   						.single();
+   			
+   				DocumentWriteOutcome[] ordered = new DocumentWriteOutcome[outcomes.size()];
+   				for (DocumentWriteOutcome outcome : outcomes) {
+   					ordered[outcome.getIndex()] = outcome;
+   					// a write that timed out may still have reached the cluster
+   					evictCached(outcome.getId());
+   				}
+   			
+   				BulkWriteResult result = new BulkWriteResult();
+   				result.setOutcomes(new ArrayList<DocumentWriteOutcome>(Arrays.asList(ordered)));
+   			
+   				if (!result.isAllSuccessful()) {
+   					LOG.warn("Couchbase Bulk Write: " + result.getFailures().size() + " of " + ordered.length + " documents could not be written.");
+   				}
+   			
+   				return result;
+   			}
+   		});
+   	}
+   	
+   	private static <D extends Document<?>> Observable<D> write(AsyncBucket asyncBucket, WriteMode writeMode, D document, PersistTo persistTo, ReplicateTo replicateTo){
+   		switch (writeMode) {
+		case INSERT:
+			return asyncBucket.insert(document, persistTo, replicateTo);
+		case REPLACE:
+			return asyncBucket.replace(document, persistTo, replicateTo);
+		default:
+			return asyncBucket.upsert(document, persistTo, replicateTo);
 		}
-		
-		document = bucket.replace(document);
-		
-		JavaMapDocument returnDocument = JavaMapDocument.fromJsonDocument(document);
+   	}
+   	
+   	/**
+   	 * This method retrieves the content of document with given id as is, without building a {@link JavaMapDocument}. 
+   	 * Use it for flows passing documents through, where no intermediate {@link Map} is needed.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param format {@link RawFormat} JSON returns the content as {@link String}, BINARY as byte[].
+   	 * @return Document content, null if document does not exist.
+   	 * @see com.couchbase.client.java.Bucket#get(String, Class)
+   	 */
+   	@Processor(friendlyName="Get Raw Document")
+   	public Object getRawDocument(MuleEvent muleEvent, final String id, 
+   			@Placement(group="Raw Content") @Summary("JSON returns a String, BINARY returns a byte array.") @Default("JSON") final RawFormat format){
+   		
+   		return config.getMetrics().time(new TimedOperation<Object, RuntimeException>(Operation.GET_RAW, id, null) {
+   			@Override
+   			protected Object run() {
+   				Bucket bucket = openBucket();
+   			
+   				if(format == RawFormat.BINARY){
+   					BinaryDocument document = bucket.get(id, BinaryDocument.class);
+   					return document == null ? null : toBytes(document.content());
+   				}
+   			
+   				RawJsonDocument document = bucket.get(id, RawJsonDocument.class);
+   				return document == null ? null : document.content();
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * This method writes the given content as is into couchbase database, without building a {@link JavaMapDocument}. 
+   	 * Content can be a {@link String}, byte[] or {@link InputStream}. JSON content is not parsed, it is expected to be valid JSON.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param content Document content as {@link String}, byte[] or {@link InputStream}
+   	 * @param writeMode {@link WriteMode} insert, upsert or replace
+   	 * @param format {@link RawFormat} to store the document with
+   	 * @param expiry Document expiration time in seconds. Ignored if less than 0.
+   	 * @param cas CAS value that must match with the one stored in database, 0 to write unconditionally.
+   	 * @return {@link JavaMapDocument} containing document id, cas and expiry. Content is not set.
+   	 * @throws IOException if content stream cannot be read
+   	 * @see com.couchbase.client.java.document.RawJsonDocument
+   	 * @see com.couchbase.client.java.document.BinaryDocument
+   	 */
+   	@Processor(friendlyName="Write Raw Document")
+   	public JavaMapDocument writeRawDocument(MuleEvent muleEvent, @Placement(group="Document to Write") @FriendlyName("Document ID") final String id,
+   			@Placement(group="Document to Write") @Summary("String, byte array or InputStream.") @Default("#[payload]") final Object content,
+   			@Placement(group="Document to Write") @Default("UPSERT") final WriteMode writeMode,
+   			@Placement(group="Raw Content") @Default("JSON") final RawFormat format,
+   			@Placement(group="Document Metadata") @FriendlyName("Expiration Time") @Default("-1") final int expiry,
+   			@Placement(group="Document Metadata") @FriendlyName("CAS") @Default("0") final long cas) throws IOException{
+   		
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, IOException>(Operation.WRITE_RAW, id, content) {
+   			@Override
+   			protected JavaMapDocument run() throws IOException {
+   				Bucket bucket = openBucket();
+   			
+   				int documentExpiry = expiry >= 0 ? expiry : 0;
+   			
+   				Document<?> document;
+   				if(format == RawFormat.BINARY){
+   					document = write(bucket, writeMode, BinaryDocument.create(id, documentExpiry, Unpooled.wrappedBuffer(toBytes(content)), cas));
+   				} else {
+   					document = write(bucket, writeMode, RawJsonDocument.create(id, documentExpiry, toText(content), cas));
+   				}
+   			
+   				evictCached(document.id());
+   			
+   				JavaMapDocument returnDocument = new JavaMapDocument(document.id());
+   				returnDocument.setCas(document.cas());
+   				returnDocument.setExpiry(document.expiry());
+   			
+   				return returnDocument;
+   			}
+   		});
+   	}
+   	
+   	private static String toText(Object content) throws IOException{
+   		if(content instanceof String) return (String) content;
+   		if(content instanceof byte[]) return new String((byte[]) content, UTF_8);
+   		if(content instanceof InputStream) return IOUtils.toString((InputStream) content, "UTF-8");
+   		throw new IllegalArgumentException("Raw document content must be a String, byte array or InputStream but was " + (content == null ? null : content.getClass().getName()));
+   	}
+   	
+   	private static byte[] toBytes(Object content) throws IOException{
+   		if(content instanceof byte[]) return (byte[]) content;
+   		if(content instanceof String) return ((String) content).getBytes(UTF_8);
+   		if(content instanceof InputStream) return IOUtils.toByteArray((InputStream) content);
+   		throw new IllegalArgumentException("Raw document content must be a String, byte array or InputStream but was " + (content == null ? null : content.getClass().getName()));
+   	}
+   	
+   	/**
+   	 * Copies the content of a buffer read from database and releases it.
+   	 */
+   	private static byte[] toBytes(ByteBuf content){
+   		try {
+   			byte[] bytes = new byte[content.readableBytes()];
+   			content.readBytes(bytes);
+   			return bytes;
+   		} finally {
+   			content.release();
+   		}
+   	}
+   	
+   	private static <D extends Document<?>> D write(Bucket bucket, WriteMode writeMode, D document){
+   		switch (writeMode) {
+		case INSERT:
+			return bucket.insert(document);
+		case REPLACE:
+			return bucket.replace(document);
+		default:
+			return bucket.upsert(document);
+		}
+   	}
+   	
+   	/**
+   	 * This method atomically increments or decrements the counter document with given id on the server, in a single request without CAS retries.
+   	 * Counter documents hold a plain number and can also be read with Get Raw Document.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of counter document
+   	 * @param delta Amount to add to the counter, negative to decrement. Counter does not go below 0.
+   	 * @param initial Value of the counter if it does not exist yet. If not set, the operation fails for a missing counter.
+   	 * @param expiry Counter expiration time in seconds, applied when the counter is created. 0 never expires.
+   	 * @return new value of the counter.
+   	 * @see com.couchbase.client.java.Bucket#counter(String, long, long, int)
+   	 */
+   	@Processor(friendlyName="Counter")
+   	public long counter(MuleEvent muleEvent, @Placement(group="Counter") @FriendlyName("Counter ID") final String id,
+   			@Placement(group="Counter") @Default("1") final long delta,
+   			@Placement(group="Counter") @Optional @FriendlyName("Initial Value") @Summary("Value of the counter if it does not exist yet. Leave empty to fail for a missing counter.") final Long initial,
+   			@Placement(group="Counter") @FriendlyName("Expiration Time") @Default("0") final int expiry){
+   		
+   		return config.getMetrics().time(new TimedOperation<Long, RuntimeException>(Operation.COUNTER, id, null) {
+   			@Override
+   			protected Long run() {
+   				Bucket bucket = openBucket();
+   			
+   				JsonLongDocument document = initial == null ? bucket.counter(id, delta) : bucket.counter(id, delta, initial, expiry);
+   				evictCached(id);
+   			
+   				return document.content();
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * This method appends the given content to the existing document with given id on the server, without reading the document. 
+   	 * Content is appended as bytes, so it is meant for binary or string documents, appending to a JSON document makes it invalid JSON.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param content Content to append as {@link String}, byte[] or {@link InputStream}
+   	 * @param cas CAS value that must match with the one stored in database, 0 to append unconditionally.
+   	 * @return {@link JavaMapDocument} containing document id and new cas. Content is not set.
+   	 * @throws IOException if content stream cannot be read
+   	 * @see com.couchbase.client.java.Bucket#append(Document)
+   	 */
+   	@Processor(friendlyName="Append to Document")
+   	public JavaMapDocument appendDocument(MuleEvent muleEvent, @Placement(group="Document to Append to") @FriendlyName("Document ID") final String id,
+   			@Placement(group="Document to Append to") @Summary("String, byte array or InputStream.") @Default("#[payload]") final Object content,
+   			@Placement(group="Document Metadata") @FriendlyName("CAS") @Default("0") final long cas) throws IOException{
    		
-   		return returnDocument;
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, IOException>(Operation.APPEND, id, content) {
+   			@Override
+   			protected JavaMapDocument run() throws IOException {
+   				BinaryDocument document = openBucket().append(BinaryDocument.create(id, Unpooled.wrappedBuffer(toBytes(content)), cas));
+   				evictCached(id);
+   			
+   				JavaMapDocument returnDocument = new JavaMapDocument(document.id());
+   				returnDocument.setCas(document.cas());
+   			
+   				return returnDocument;
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * This method prepends the given content to the existing document with given id on the server, without reading the document. 
+   	 * Content is prepended as bytes, so it is meant for binary or string documents, prepending to a JSON document makes it invalid JSON.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param content Content to prepend as {@link String}, byte[] or {@link InputStream}
+   	 * @param cas CAS value that must match with the one stored in database, 0 to prepend unconditionally.
+   	 * @return {@link JavaMapDocument} containing document id and new cas. Content is not set.
+   	 * @throws IOException if content stream cannot be read
+   	 * @see com.couchbase.client.java.Bucket#prepend(Document)
+   	 */
+   	@Processor(friendlyName="Prepend to Document")
+   	public JavaMapDocument prependDocument(MuleEvent muleEvent, @Placement(group="Document to Prepend to") @FriendlyName("Document ID") final String id,
+   			@Placement(group="Document to Prepend to") @Summary("String, byte array or InputStream.") @Default("#[payload]") final Object content,
+   			@Placement(group="Document Metadata") @FriendlyName("CAS") @Default("0") final long cas) throws IOException{
    		
+   		return config.getMetrics().time(new TimedOperation<JavaMapDocument, IOException>(Operation.PREPEND, id, content) {
+   			@Override
+   			protected JavaMapDocument run() throws IOException {
+   				BinaryDocument document = openBucket().prepend(BinaryDocument.create(id, Unpooled.wrappedBuffer(toBytes(content)), cas));
+   				evictCached(id);
+   			
+   				JavaMapDocument returnDocument = new JavaMapDocument(document.id());
+   				returnDocument.setCas(document.cas());
+   			
+   				return returnDocument;
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * This method reads only the given paths of the document with given id, in a single request. Only the requested fragments are transferred and decoded, 
+   	 * instead of the whole document.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param paths {@link List} of paths whose values should be returned, e.g. address.city or tags[0]
+   	 * @param existsPaths {@link List} of paths whose existence should be checked
+   	 * @return {@link SubdocResult} containing document cas and values by path. Value is null for a path that does not exist, existence check values are {@link Boolean}.
+   	 * @see com.couchbase.client.java.Bucket#lookupIn(String)
+   	 */
+   	@Processor(friendlyName="Lookup In Document")
+   	public SubdocResult lookupInDocument(MuleEvent muleEvent, @Placement(group="Document to Lookup") @FriendlyName("Document ID") final String id,
+   			@Placement(group="Paths") @FriendlyName("Get Paths") @Optional List<String> paths,
+   			@Placement(group="Paths") @FriendlyName("Exists Paths") @Optional List<String> existsPaths){
+   		
+   		return config.getMetrics().time(new TimedOperation<SubdocResult, RuntimeException>(Operation.LOOKUP_IN, id, null) {
+   			@Override
+   			protected SubdocResult run() {
+   				Bucket bucket = openBucket();
+   			
+   				LookupInBuilder builder = bucket.lookupIn(id);
+   				if(paths != null && !paths.isEmpty()){
+   					builder.get(paths.toArray(new String[paths.size()]));
+   				}
+   				if(existsPaths != null && !existsPaths.isEmpty()){
+   					builder.exists(existsPaths.toArray(new String[existsPaths.size()]));
+   				}
+   			
+   				DocumentFragment<Lookup> fragment = builder.execute();
+   			
+   				SubdocResult result = new SubdocResult();
+   				result.setId(fragment.id());
+   				result.setCas(fragment.cas());
+   				if(paths != null){
+   					for (String path : paths) {
+   						result.getValues().put(path, fragment.status(path) == ResponseStatus.SUCCESS ? fromJsonValue(fragment.content(path)) : null);
+   					}
+   				}
+   				if(existsPaths != null){
+   					for (String path : existsPaths) {
+   						result.getValues().put(path, fragment.status(path) == ResponseStatus.SUCCESS);
+   					}
+   				}
+   			
+   				return result;
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * This method applies all given mutations to paths of the document with given id atomically, in a single request. 
+   	 * Only the mutated fragments are transferred, instead of reading and replacing the whole document.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @param mutations {@link List} of {@link SubdocMutation} to apply, in order.
+   	 * @param expiry Document expiration time in seconds. Ignored if less than 0.
+   	 * @param cas CAS value that must match with the one stored in database, 0 to mutate unconditionally.
+   	 * @return {@link SubdocResult} containing new document cas and new values of counter mutations by path.
+   	 * @see com.couchbase.client.java.Bucket#mutateIn(String)
+   	 */
+   	@Processor(friendlyName="Mutate In Document")
+   	public SubdocResult mutateInDocument(MuleEvent muleEvent, @Placement(group="Document to Mutate") @FriendlyName("Document ID") final String id,
+   			@Placement(group="Mutations") final List<SubdocMutation> mutations,
+   			@Placement(group="Document Metadata") @FriendlyName("Expiration Time") @Default("-1") final int expiry,
+   			@Placement(group="Document Metadata") @FriendlyName("CAS") @Default("0") final long cas){
+   		
+   		return config.getMetrics().time(new TimedOperation<SubdocResult, RuntimeException>(Operation.MUTATE_IN, id, null) {
+   			@Override
+   			protected SubdocResult run() {
+   				Bucket bucket = openBucket();
+   			
+   				MutateInBuilder builder = bucket.mutateIn(id);
+   				for (SubdocMutation mutation : mutations) {
+   					String path = mutation.getPath();
+   					Object value = toJsonValue(mutation.getValue());
+   					switch (mutation.getType()) {
+					case INSERT:
+						builder.insert(path, value, mutation.isCreateParents());
+						break;
+					case REPLACE:
+						builder.replace(path, value);
+						break;
+					case ARRAY_APPEND:
+						builder.arrayAppend(path, value, mutation.isCreateParents());
+						break;
+					case ARRAY_PREPEND:
+						builder.arrayPrepend(path, value, mutation.isCreateParents());
+						break;
+					case COUNTER:
+						builder.counter(path, mutation.getDelta(), mutation.isCreateParents());
+						break;
+					case REMOVE:
+						builder.remove(path);
+						break;
+					default:
+						builder.upsert(path, value, mutation.isCreateParents());
+						break;
+					}
+   				}
+   				if(cas > 0) builder.withCas(cas);
+   				if(expiry >= 0) builder.withExpiry(expiry);
+   			
+   				DocumentFragment<Mutation> fragment = builder.execute();
+   				evictCached(id);
+   			
+   				SubdocResult result = new SubdocResult();
+   				result.setId(fragment.id());
+   				result.setCas(fragment.cas());
+   				for (SubdocMutation mutation : mutations) {
+   					if(mutation.getType() == SubdocMutationType.COUNTER){
+   						result.getValues().put(mutation.getPath(), ((Number) fragment.content(mutation.getPath())).longValue());
+   					}
+   				}
+   			
+   				return result;
+   			}
+   		});
+   	}
+   	
+   	@SuppressWarnings("unchecked")
+   	private static Object toJsonValue(Object value){
+   		if(value instanceof Map) return JsonObject.from((Map<String, ?>) value);
+   		if(value instanceof List) return JsonArray.from((List<?>) value);
+   		return value;
+   	}
+   	
+   	private static Object fromJsonValue(Object value){
+   		if(value instanceof JsonObject) return ((JsonObject) value).toMap();
+   		if(value instanceof JsonArray) return ((JsonArray) value).toList();
+   		return value;
    	}
    	
    	/**
@@ -188,34 +946,35 @@ public class CouchbaseConnector{
    	 * 
    	 * @param muleEvent
    	 * @param javaMapDocument {@link JavaMapDocument} containing id of the document to be removed from server. Content value is ignored.
-   	 * @return {@link JavaMapDocument} containing document id, cas, expiry and content from database.
+   	 * @param matchCas Only remove the document if its CAS matches the CAS of given document. A mismatch raises {@link com.couchbase.client.java.error.CASMismatchException}.
+   	 * @return true if document was removed, false if document with given id does not exist.
    	 * @see com.couchbase.client.java.Bucket#remove(com.couchbase.client.java.document.Document)
    	 */
    	@Processor(friendlyName="Delete Document")
-   	public boolean deleteDocument(MuleEvent muleEvent, @Placement(group="Document to Delete") @FriendlyName("Document") @Summary("Specify the document to be deleted.") JavaMapDocument javaMapDocument){
-   		
-   		Bucket bucket = openBucket();
-		
-   		if(!bucket.exists(javaMapDocument.getId())) {
-			LOG.error("Document with id "+ javaMapDocument.getId() +" does not exist.", new DocumentDoesNotExistException("Document with id "+ javaMapDocument.getId() +" does not exist."));
-			return false;
-		}
-   		
-		JsonDocument document = bucket.remove(javaMapDocument.getId());
-		
-		try {
-			JavaMapDocument.fromJsonDocument(document);
-		} catch (DocumentDoesNotExistException notExists) {
-			LOG.info("Couchbase Delete: Document to delete does not exist: "+ javaMapDocument.getId());
-			return false;
-		}catch (Exception otherEx) {
-			LOG.info("Couchbase Delete: Unable to delete document: "+ javaMapDocument.getId());
-			return false;
-		}
-		
-   		
-   		return true;
+   	public boolean deleteDocument(MuleEvent muleEvent, @Placement(group="Document to Delete") @FriendlyName("Document") @Summary("Specify the document to be deleted.") final JavaMapDocument javaMapDocument,
+   			@Placement(group="Document to Delete") @FriendlyName("Match CAS") @Summary("Only delete the document if its CAS matches the CAS of specified document.") @Default("false") final boolean matchCas){
    		
+   		return config.getMetrics().time(new TimedOperation<Boolean, RuntimeException>(Operation.DELETE, idOf(javaMapDocument), null) {
+   			@Override
+   			protected Boolean run() {
+   				Bucket bucket = openBucket();
+			
+				try {
+					if(matchCas){
+						bucket.remove(JsonDocument.create(javaMapDocument.getId(), null, javaMapDocument.getCas()));
+					} else {
+						bucket.remove(javaMapDocument.getId());
+					}
+					evictCached(javaMapDocument.getId());
+				} catch (DocumentDoesNotExistException notExists) {
+					evictCached(javaMapDocument.getId());
+					LOG.info("Couchbase Delete: Document to delete does not exist: "+ javaMapDocument.getId());
+					return false;
+				}
+   			
+   				return true;
+   			}
+   		});
    	}
    	
    	/**
@@ -228,61 +987,479 @@ public class CouchbaseConnector{
    	 * @see com.couchbase.client.java.Bucket#unlock(com.couchbase.client.java.document.Document)
    	 */
    	@Processor(friendlyName="Unlock Document")
-   	public boolean unlockDocument(MuleEvent muleEvent, @Placement(group="Document to be Unlocked") @FriendlyName("Document ID") @Summary("Specify the document Id to be unlocked.") String id,
-   			@Placement(group="Document to be Unlocked") @FriendlyName("Document CAS") @Summary("Document CAS must match with the one stored in database.") Long cas){
-   		
-   		Bucket bucket = openBucket();
-   		
-   		boolean unlocked = bucket.unlock(id, cas);
-		
-   		return unlocked;
+   	public boolean unlockDocument(MuleEvent muleEvent, @Placement(group="Document to be Unlocked") @FriendlyName("Document ID") @Summary("Specify the document Id to be unlocked.") final String id,
+   			@Placement(group="Document to be Unlocked") @FriendlyName("Document CAS") @Summary("Document CAS must match with the one stored in database.") final Long cas){
    		
+   		return config.getMetrics().time(new TimedOperation<Boolean, RuntimeException>(Operation.UNLOCK, id, null) {
+   			@Override
+   			protected Boolean run() {
+   				Bucket bucket = openBucket();
+   			
+   				boolean unlocked = bucket.unlock(id, cas);
+			
+   				return unlocked;
+   			}
+   		});
    	}
    	
    	/**
    	 * Runs the N1QL query and result the result set. Optionally, either positional or named parameters can be provided.
+   	 * Indexes required by the query are expected to exist, see index settings of {@link CouchbaseConnectorConfig}.
+   	 * Metrics returned by the query service are aggregated per statement fingerprint in the query statistics of the config. Sampled executions 
+   	 * request the profile of the query, kept with these statistics, see Profile Every Nth Execution on {@link CouchbaseConnectorConfig}.
    	 * @param muleEvent
    	 * @param query to be executed.
    	 * @param positionalParams {@link List} containing positional parameters to replace place holders in query. Takes precedence over named parameters.
    	 * @param namedParams {@link Map} containing named parameters to be replaced in query.
+   	 * @param prepared Run the query as a prepared statement, prepared on first use and its plan cached by statement text. If the query service rejects 
+   	 * a cached plan before executing it, the statement is prepared again and run once more.
+   	 * @param metricsVariable Name of the flow variable to set with the request id, status and {@link N1qlMetrics} returned by the query service, e.g. executionTime and resultCount.
    	 * @return {@link List} containing the documents in map.
+   	 * @see org.mule.modules.couchbase.metrics.QueryStatistics
    	 */
    	@Processor(friendlyName="Execute Query")
-   	public List<Map<String, Object>> executeQuery(MuleEvent muleEvent, String query, @Optional @FriendlyName("Positional Parameters") 
-   				@Summary("For positional parameters, specify list of param values. For named parameters, specify Map of key-value pairs.") Object params){
+   	public List<Map<String, Object>> executeQuery(final MuleEvent muleEvent, final String query, @Optional @FriendlyName("Positional Parameters") 
+   				@Summary("For positional parameters, specify list of param values. For named parameters, specify Map of key-value pairs.") final Object params,
+   				@Placement(group="Query Options") @FriendlyName("Use Prepared Statement") @Summary("Plan the statement once and reuse the plan for subsequent executions of the same statement.") @Default("false") final boolean prepared,
+   				@Placement(group="Query Metrics") @Optional @FriendlyName("Metrics Variable") @Summary("Flow variable to set with the metrics returned by the query service: elapsedTime, executionTime, resultCount, resultSize and mutationCount.") final String metricsVariable){
    		
-   		Bucket bucket = openBucket();
-   		
-   		bucket.bucketManager().createN1qlPrimaryIndex(true, false);
-   		
-   		N1qlQueryResult result;
+   		return config.getMetrics().time(new TimedOperation<List<Map<String, Object>>, RuntimeException>(Operation.QUERY, query, null) {
+   			@Override
+   			protected List<Map<String, Object>> run() {
+   				boolean success = false;
+   				boolean profile = sampleQueryProfile(query);
+   				N1qlQueryResult result = null;
+   				try {
+   					Bucket bucket = openBucket();
+   				
+   					result = bucket.query(buildQuery(query, params, prepared ? preparedPlan(bucket, query) : null, profile));
+   				
+   					if(prepared && !result.finalSuccess() && PreparedStatementCache.isPlanInvalidated(result.errors())){
+   						LOG.debug("Prepared plan invalidated, preparing again the N1QL Query: {}", query);
+   						getPreparedStatementCache().invalidate(query);
+   						retries(1);
+   						result = bucket.query(buildQuery(query, params, preparedPlan(bucket, query), profile));
+   					}
+   				
+   					if(!result.parseSuccess()){
+   						LOG.error("Failed to parse the query with errors: " + result.errors());
+   						throw new MessagingException("Failed to parse the N1QL Query: "+ query);
+   					}
+   				
+   					if(!result.finalSuccess()){
+   						LOG.error("Failed to execute the query with errors: "+ result.errors());
+   						throw new MessagingException("Failed to execute the N1QL Query: "+ query);
+   					}
+   				
+   					List<Map<String, Object>> resultSet = new ArrayList<Map<String,Object>>();
+   				
+   					for (N1qlQueryRow row : result.allRows()){
+   						resultSet.add(row.value().toMap());
+   					}
+   				
+   					if(metricsVariable != null && !metricsVariable.trim().isEmpty()){
+   						muleEvent.setFlowVariable(metricsVariable, CouchbaseConnector.queryMetrics(result));
+   					}
+   				
+   					success = true;
+   					return resultSet;
+   				} finally {
+   					N1qlMetrics metrics = result == null ? null : result.info();
+   					queryMetrics(metrics);
+   					QueryStatementStatistics statistics = recordQueryStatistics(query, metrics, success);
+   					if(statistics != null && profile && result != null) recordQueryProfile(statistics, query, result);
+   				}
+   			}
+   		});
+   	}
+   	
+   	/**
+   	 * Adds the execution to the query statistics of the config. Failures are only logged, so they never replace the outcome of the query.
+   	 * @return statistics of the statement, null if they could not be recorded.
+   	 */
+   	private QueryStatementStatistics recordQueryStatistics(String query, N1qlMetrics metrics, boolean success){
+   		try {
+   			return config.getMetrics().getQueryStatistics().record(query, metrics, success);
+   		} catch (RuntimeException e) {
+   			LOG.warn("Unable to record statistics of the N1QL Query: " + query, e);
+   			return null;
+   		}
+   	}
+   	
+   	private static Map<String, Object> queryMetrics(N1qlQueryResult result){
+   		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+   		metrics.put("requestId", result.requestId());
+   		metrics.put("status", result.status());
+   		if(result.info() != null) metrics.putAll(result.info().asJsonObject().toMap());
+   		return metrics;
+   	}
+   	
+   	/**
+   	 * Tells whether the execution of the query about to run is profiled, see Profile Every Nth Execution on {@link CouchbaseConnectorConfig}.
+   	 * Failures are only logged, the query then runs without profile.
+   	 */
+   	private boolean sampleQueryProfile(String query){
+   		try {
+   			return config.getMetrics().getQueryStatistics().sample(query, config.getQueryProfileSampleEvery());
+   		} catch (RuntimeException e) {
+   			LOG.debug("Unable to sample the N1QL Query: " + query, e);
+   			return false;
+   		}
+   	}
+   	
+   	/**
+   	 * Keeps the profile returned by the query service for a profiled execution with the statistics of the statement. Servers not supporting 
+   	 * profiles return none, the latest profile is then kept. Failures are only logged.
+   	 */
+   	private void recordQueryProfile(QueryStatementStatistics statistics, String query, N1qlQueryResult result){
+   		try {
+   			JsonObject profile = result.profileInfo();
+   			if(profile != null && !profile.isEmpty()) statistics.setProfile(profile.toString());
+   		} catch (RuntimeException e) {
+   			LOG.debug("Unable to record profile of the N1QL Query: " + query, e);
+   		}
+   	}
+   	
+   	/**
+   	 * Runs the N1QL query and streams the result set. Rows are converted to {@link Map} one at a time as the returned iterator is consumed 
+   	 * (e.g. by a foreach scope), with at most twice Buffer Size rows held in memory ahead of the consumer. If the consumer falls further behind, 
+   	 * streaming fails with an error instead of buffering the whole result. A flow that stops reading before the last row should close the iterator 
+   	 * to release the underlying response. Optionally, either positional or named parameters can be provided.
+   	 * Metrics returned by the query service are added to the query statistics once the response completes. The latency of the operation is recorded
+   	 * once the last row was streamed, streaming failed or the iterator was closed.
+   	 * @param muleEvent
+   	 * @param query to be executed.
+   	 * @param params {@link List} containing positional parameters or {@link Map} containing named parameters to replace place holders in query.
+   	 * @param prepared Run the query as a prepared statement, planned once and cached by statement text. If the query service rejects 
+   	 * a cached plan before executing it, the statement is prepared again and run once more.
+   	 * @param bufferSize Maximum number of rows buffered ahead of the consumer. Raise it for consumers that are slower than the response.
+   	 * @return {@link QueryResultIterator} over the documents in map.
+   	 * @see com.couchbase.client.java.AsyncBucket#query(N1qlQuery)
+   	 */
+   	@Processor(friendlyName="Execute Query (streaming)")
+   	public QueryResultIterator executeQueryStreaming(MuleEvent muleEvent, final String query, @Optional @FriendlyName("Positional Parameters") 
+   				@Summary("For positional parameters, specify list of param values. For named parameters, specify Map of key-value pairs.") final Object params,
+   				@Placement(group="Query Options") @FriendlyName("Use Prepared Statement") @Summary("Plan the statement once and reuse the plan for subsequent executions of the same statement.") @Default("false") final boolean prepared,
+   				@Placement(group="Query Options") @FriendlyName("Buffer Size") @Summary("Maximum number of rows buffered ahead of the consumer, up to twice as many are held in memory. Streaming fails if the consumer falls further behind.") @Default("1024") final int bufferSize){
    		
-   		if(params != null && params instanceof List){
-   			result = bucket.query(N1qlQuery.parameterized(query, JsonArray.from(params)));
-   		} else if (params != null && params instanceof Map) {
-   			result = bucket.query(N1qlQuery.parameterized(query, JsonObject.from((Map)params)));
-   		} else {
-   			result = bucket.query(N1qlQuery.simple(query));
+   		long start = System.nanoTime();
+   		Bucket bucket = openBucket();
+   		Observable<Map<String, Object>> rows;
+   		try {
+   			rows = streamRows(bucket, query, params, prepared, prepared);
+   		} catch (RuntimeException e) {
+   			config.getMetrics().record(Operation.QUERY_STREAMING, start, false, query, null, null, 0);
+   			throw e;
    		}
+   		return new QueryResultIterator(config.getMetrics().time(rows, Operation.QUERY_STREAMING, query, start), bufferSize, bucket.environment().queryTimeout());
+   	}
+   	
+   	/**
+   	 * Sends the query and returns its rows as {@link Map}, followed by an error if the query service reported any. Metrics returned by the query service 
+   	 * are added to the query statistics once the response completes. If the query service rejects the cached plan of a prepared statement before executing it, 
+   	 * the plan is invalidated and, if retryInvalidatedPlan, the statement is prepared again and run once more in place of the rejected response.
+   	 */
+   	private Observable<Map<String, Object>> streamRows(final Bucket bucket, final String query, final Object params, final boolean prepared, final boolean retryInvalidatedPlan){
+   		AsyncN1qlQueryResult result = bucket.async().query(buildQuery(query, params, prepared ? preparedPlan(bucket, query) : null))
+   				.timeout(bucket.environment().queryTimeout(), TimeUnit.MILLISECONDS)
+   				.toBlocking()
+   				.single();
    		
    		if(!result.parseSuccess()){
-   			LOG.error("Failed to parse the query with errors: " + result.errors());
+   			List<JsonObject> errors = result.errors().toList().toBlocking().single();
+   			if(prepared && PreparedStatementCache.isPlanInvalidated(errors)){
+   				LOG.debug("Prepared plan invalidated, preparing again the N1QL Query: {}", query);
+   				getPreparedStatementCache().invalidate(query);
+   				if(retryInvalidatedPlan) return streamRows(bucket, query, params, true, false);
+   			}
+   			LOG.error("Failed to parse the query with errors: " + errors);
    			throw new MessagingException("Failed to parse the N1QL Query: "+ query);
    		}
    		
-   		if(!result.finalSuccess()){
-   			LOG.error("Failed to execute the query with errors: "+ result.errors());
-   			throw new MessagingException("Failed to execute the N1QL Query: "+ query);
-   		}
+   		// errors are collected right away, so they are not released by the response while a slow consumer is still reading rows
+   		ConnectableObservable<List<JsonObject>> errors = result.errors().toList().replay();
+   		errors.connect();
+   		
+   		Observable.zip(result.info(), errors, new Func2<N1qlMetrics, List<JsonObject>, Boolean>() {
+   			@Override
+   			public Boolean call(N1qlMetrics metrics, List<JsonObject> errors) {
+   				// a rejected plan is not an execution, the statement run again is recorded instead
+   				if(!(retryInvalidatedPlan && PreparedStatementCache.isPlanInvalidated(errors))){
+   					recordQueryStatistics(query, metrics, errors.isEmpty());
+   				}
+   				return errors.isEmpty();
+   			}
+   		}).subscribe(Actions.empty(), new Action1<Throwable>() {
+   			@Override
+   			public void call(Throwable e) {
+   				recordQueryStatistics(query, null, false);
+   			}
+   		});
    		
-   		List<Map<String, Object>> resultSet = new ArrayList<Map<String,Object>>();
+   		Observable<Map<String, Object>> failures = errors.flatMap(new Func1<List<JsonObject>, Observable<Map<String, Object>>>() {
+   			@Override
+   			public Observable<Map<String, Object>> call(List<JsonObject> errors) {
+   				if(errors.isEmpty()) return Observable.empty();
+   				if(prepared && PreparedStatementCache.isPlanInvalidated(errors)){
+   					LOG.debug("Prepared plan invalidated, preparing again the N1QL Query: {}", query);
+   					getPreparedStatementCache().invalidate(query);
+   					if(retryInvalidatedPlan){
+   						// the plan is rejected before any row is returned, so the rows of the statement run again simply follow; preparing blocks, so not on an SDK thread
+   						return Observable.defer(new Func0<Observable<Map<String, Object>>>() {
+   							@Override
+   							public Observable<Map<String, Object>> call() {
+   								return streamRows(bucket, query, params, true, false);
+   							}
+   						}).subscribeOn(Schedulers.io());
+   					}
+   				}
+   				LOG.error("Failed to execute the query with errors: "+ errors);
+   				return Observable.error(new MessagingException("Failed to execute the N1QL Query: "+ query));
+   			}
+   		});
    		
-   		for (N1qlQueryRow row : result.allRows()){
-   			resultSet.add(row.value().toMap());
+   		return result.rows()
+   				.map(new Func1<AsyncN1qlQueryRow, Map<String, Object>>() {
+   					@Override
+   					public Map<String, Object> call(AsyncN1qlQueryRow row) {
+   						return row.value().toMap();
+   					}
+   				})
+   				.concatWith(failures);
+   	}
+   	
+   	/**
+   	 * This method starts retrieving the document with given id through the asynchronous bucket API and returns immediately. 
+   	 * Near and off-heap caches are not consulted. Use Await Results to get the document.
+   	 * @param muleEvent
+   	 * @param id Unique identifier of document
+   	 * @return {@link Future} of {@link JavaMapDocument}, completed with null if document does not exist.
+   	 * @see com.couchbase.client.java.AsyncBucket#get(String)
+   	 */
+   	@Processor(friendlyName="Get Document (async)")
+   	public Future<JavaMapDocument> getDocumentAsync(MuleEvent muleEvent, String id){
+   		
+   		long start = System.nanoTime();
+   		Bucket bucket = openBucket();
+   		
+   		return config.getMetrics().time(bucket.async().get(id)
+   				.map(new Func1<JsonDocument, JavaMapDocument>() {
+   					@Override
+   					public JavaMapDocument call(JsonDocument document) {
+   						return JavaMapDocument.fromJsonDocument(document);
+   					}
+   				})
+   				.timeout(bucket.environment().kvTimeout(), TimeUnit.MILLISECONDS), Operation.GET_ASYNC, id, start)
+   				.singleOrDefault(null)
+   				.toBlocking()
+   				.toFuture();
+   		
+   	}
+   	
+   	/**
+   	 * This method starts writing the document through the asynchronous bucket API, using the insert, upsert or replace semantics of the selected write mode, and returns immediately.
+   	 * Use Await Results to get the written document or the exception raised by the write.
+   	 * @param muleEvent
+   	 * @param javaMapDocument {@link JavaMapDocument} containing document id and content to be written in database.
+   	 * @param writeMode {@link WriteMode} of the write.
+   	 * @return {@link Future} of {@link JavaMapDocument} containing document id, cas, expiry and content from database.
+   	 * @see com.couchbase.client.java.AsyncBucket#upsert(com.couchbase.client.java.document.Document)
+   	 */
+   	@Processor(friendlyName="Write Document (async)")
+   	public Future<JavaMapDocument> writeDocumentAsync(MuleEvent muleEvent, @Placement(group="Document to Write") @FriendlyName("Document") @Summary("Specify the document to be written.") JavaMapDocument javaMapDocument,
+   			@Placement(group="Document to Write") @Summary("Insert fails for existing documents, replace fails for missing documents.") @Default("UPSERT") WriteMode writeMode){
+   		
+   		long start = System.nanoTime();
+   		Bucket bucket = openBucket();
+   		
+   		return config.getMetrics().time(write(bucket.async(), writeMode, javaMapDocument.toJsonDocument(), PersistTo.NONE, ReplicateTo.NONE)
+   				.map(new Func1<JsonDocument, JavaMapDocument>() {
+   					@Override
+   					public JavaMapDocument call(JsonDocument document) {
+   						evictCached(document.id());
+   						return JavaMapDocument.fromJsonDocument(document);
+   					}
+   				})
+   				.timeout(bucket.environment().kvTimeout(), TimeUnit.MILLISECONDS), Operation.WRITE_ASYNC, javaMapDocument.getId(), start)
+   				.toBlocking()
+   				.toFuture();
+   		
+   	}
+   	
+   	/**
+   	 * This method starts removing the document through the asynchronous bucket API and returns immediately. Use Await Results to get the outcome.
+   	 * @param muleEvent
+   	 * @param javaMapDocument {@link JavaMapDocument} containing id of the document to be removed from server. Content value is ignored.
+   	 * @param matchCas Only remove the document if its CAS matches the CAS of given document.
+   	 * @return {@link Future} completed with true if document was removed, false if document with given id does not exist.
+   	 * @see com.couchbase.client.java.AsyncBucket#remove(com.couchbase.client.java.document.Document)
+   	 */
+   	@Processor(friendlyName="Delete Document (async)")
+   	public Future<Boolean> deleteDocumentAsync(MuleEvent muleEvent, @Placement(group="Document to Delete") @FriendlyName("Document") @Summary("Specify the document to be deleted.") final JavaMapDocument javaMapDocument,
+   			@Placement(group="Document to Delete") @FriendlyName("Match CAS") @Summary("Only delete the document if its CAS matches the CAS of specified document.") @Default("false") boolean matchCas){
+   		
+   		long start = System.nanoTime();
+   		Bucket bucket = openBucket();
+   		
+   		Observable<JsonDocument> removed = matchCas 
+   				? bucket.async().remove(JsonDocument.create(javaMapDocument.getId(), null, javaMapDocument.getCas())) 
+   				: bucket.async().remove(javaMapDocument.getId());
+   		
+   		return config.getMetrics().time(removed
+   				.map(new Func1<JsonDocument, Boolean>() {
+   					@Override
+   					public Boolean call(JsonDocument document) {
+   						evictCached(javaMapDocument.getId());
+   						return Boolean.TRUE;
+   					}
+   				})
+   				.onErrorResumeNext(new Func1<Throwable, Observable<Boolean>>() {
+   					@Override
+   					public Observable<Boolean> call(Throwable error) {
+   						if(!(error instanceof DocumentDoesNotExistException)) return Observable.error(error);
+   						evictCached(javaMapDocument.getId());
+   						LOG.info("Couchbase Delete: Document to delete does not exist: "+ javaMapDocument.getId());
+   						return Observable.just(Boolean.FALSE);
+   					}
+   				})
+   				.timeout(bucket.environment().kvTimeout(), TimeUnit.MILLISECONDS), Operation.DELETE_ASYNC, javaMapDocument.getId(), start)
+   				.toBlocking()
+   				.toFuture();
+   		
+   	}
+   	
+   	/**
+   	 * Starts running the N1QL query through the asynchronous bucket API and returns immediately. Use Await Results to get the result set. 
+   	 * A prepared statement missing from the cache is prepared before returning. Unlike Execute Query, a statement whose cached plan is rejected 
+   	 * is not run again; the plan is dropped so that the next execution prepares it again.
+   	 * @param muleEvent
+   	 * @param query to be executed.
+   	 * @param params {@link List} containing positional parameters or {@link Map} containing named parameters to replace place holders in query.
+   	 * @param prepared Run the query as a prepared statement, planned once and cached by statement text.
+   	 * @return {@link Future} of {@link List} containing the documents in map.
+   	 * @see com.couchbase.client.java.AsyncBucket#query(N1qlQuery)
+   	 */
+   	@Processor(friendlyName="Execute Query (async)")
+   	public Future<List<Map<String, Object>>> executeQueryAsync(MuleEvent muleEvent, final String query, @Optional @FriendlyName("Positional Parameters") 
+   				@Summary("For positional parameters, specify list of param values. For named parameters, specify Map of key-value pairs.") Object params,
+   				@Placement(group="Query Options") @FriendlyName("Use Prepared Statement") @Summary("Plan the statement once and reuse the plan for subsequent executions of the same statement.") @Default("false") final boolean prepared){
+   		
+   		long start = System.nanoTime();
+   		Bucket bucket = openBucket();
+   		
+   		return config.getMetrics().time(bucket.async().query(buildQuery(query, params, prepared ? preparedPlan(bucket, query) : null))
+   				.flatMap(new Func1<AsyncN1qlQueryResult, Observable<List<Map<String, Object>>>>() {
+   					@Override
+   					public Observable<List<Map<String, Object>>> call(AsyncN1qlQueryResult result) {
+   						Observable<List<Map<String, Object>>> rows = result.rows().map(new Func1<AsyncN1qlQueryRow, Map<String, Object>>() {
+   							@Override
+   							public Map<String, Object> call(AsyncN1qlQueryRow row) {
+   								return row.value().toMap();
+   							}
+   						}).toList();
+   						return Observable.zip(rows, result.errors().toList(), new Func2<List<Map<String, Object>>, List<JsonObject>, List<Map<String, Object>>>() {
+   							@Override
+   							public List<Map<String, Object>> call(List<Map<String, Object>> rows, List<JsonObject> errors) {
+   								if(prepared && PreparedStatementCache.isPlanInvalidated(errors)){
+   									getPreparedStatementCache().invalidate(query);
+   								}
+   								if(!errors.isEmpty()){
+   									LOG.error("Failed to execute the query with errors: "+ errors);
+   									throw new MessagingException("Failed to execute the N1QL Query: "+ query);
+   								}
+   								return rows;
+   							}
+   						});
+   					}
+   				})
+   				.timeout(bucket.environment().queryTimeout(), TimeUnit.MILLISECONDS), Operation.QUERY_ASYNC, query, start)
+   				.toBlocking()
+   				.toFuture();
+   		
+   	}
+   	
+   	/**
+   	 * Waits for the results of asynchronous operations. Several operations can be started first, e.g. in a scatter-gather or by collecting their
+   	 * futures in a list, and awaited together so their round-trips overlap.
+   	 * @param muleEvent
+   	 * @param futures {@link Future} returned by an asynchronous operation, or a {@link List} of them.
+   	 * @param timeout Time in milliseconds to wait for all results.
+   	 * @return Result of the operation, or a {@link List} of results in the order of given futures.
+   	 * @throws InterruptedException if interrupted while waiting
+   	 * @throws TimeoutException if results are not available within timeout
+   	 */
+   	@Processor(friendlyName="Await Results")
+   	public Object awaitResults(MuleEvent muleEvent, @Placement(group="Operations") @FriendlyName("Futures") @Default("#[payload]") Object futures,
+   			@Placement(group="Operations") @Summary("Time in milliseconds to wait for all results.") @Default("30000") long timeout) throws InterruptedException, TimeoutException{
+   		
+   		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+   		
+   		if(futures instanceof List){
+   			List<Object> results = new ArrayList<Object>();
+   			for (Object future : (List<?>) futures) {
+   				results.add(await(future, deadline));
+   			}
+   			return results;
    		}
+   		return await(futures, deadline);
    		
-   		return resultSet;
+   	}
+   	
+   	private static Object await(Object future, long deadline) throws InterruptedException, TimeoutException{
+   		if(!(future instanceof Future)) return future;
+   		try {
+   			return ((Future<?>) future).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+   		} catch (ExecutionException e) {
+   			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+   			throw new MessagingException("Asynchronous operation failed", e.getCause());
+   		}
+   	}
+   	
+   	/**
+   	 * Returns the cached plan of the statement, preparing it with PREPARE on a cache miss.
+   	 */
+   	private PreparedPayload preparedPlan(Bucket bucket, String query){
+   		PreparedStatementCache cache = getPreparedStatementCache();
+   		PreparedPayload plan = cache.get(query);
+   		if(plan != null) return plan;
    		
+   		PrepareStatement prepare = PrepareStatement.prepare(query);
+   		N1qlQueryResult result = bucket.query(N1qlQuery.simple(prepare));
+   		if(!result.finalSuccess() || result.allRows().isEmpty()){
+   			LOG.error("Failed to prepare the query with errors: " + result.errors());
+   			throw new MessagingException("Failed to prepare the N1QL Query: "+ query);
+   		}
+   		JsonObject row = result.allRows().get(0).value();
+   		plan = new PreparedPayload(prepare.originalStatement(), row.getString("name"), row.getString("encoded_plan"));
+   		cache.put(query, plan);
+   		return plan;
+   	}
+   	
+   	@SuppressWarnings("unchecked")
+   	private N1qlQuery buildQuery(String query, Object params, PreparedPayload plan){
+   		return buildQuery(query, params, plan, false);
+   	}
+   	
+   	/**
+   	 * @param profile request timings of every operator of the plan, returned as profile of the result
+   	 */
+   	private N1qlQuery buildQuery(String query, Object params, PreparedPayload plan, boolean profile){
+   		N1qlParams queryParams = N1qlParams.build();
+   		if(profile) queryParams.rawParam("profile", "timings");
+   		if(plan != null){
+   			if(params instanceof List){
+   				return new PreparedN1qlQuery(plan, JsonArray.from((List<?>) params), queryParams);
+   			} else if (params instanceof Map) {
+   				return new PreparedN1qlQuery(plan, JsonObject.from((Map<String, ?>) params), queryParams);
+   			}
+   			return new PreparedN1qlQuery(plan, queryParams);
+   		}
+   		if(params instanceof List){
+   			return N1qlQuery.parameterized(query, JsonArray.from((List<?>) params), queryParams);
+   		} else if (params instanceof Map) {
+   			return N1qlQuery.parameterized(query, JsonObject.from((Map<String, ?>) params), queryParams);
+   		}
+   		return N1qlQuery.simple(query, queryParams);
    	}
 
 
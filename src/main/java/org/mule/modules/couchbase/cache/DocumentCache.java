@@ -0,0 +1,195 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+/**
+ * In-process read-through cache of documents by id, bounded by number of entries and evicting least recently used documents first.
+ * Entries expire after the configured time to live, or earlier if the document expires on the server before that.
+ * Documents are copied on the way in and out, so callers can modify returned documents freely.
+ * A document read from database is not cached if its id was invalidated after the read started, or if a version with a newer CAS is already cached,
+ * so a slow reader can not put back a version that a concurrent write just replaced.
+ * @author manik
+ *
+ */
+public class DocumentCache implements DocumentCacheMBean {
+	
+	/**
+	 * Expiry values above 30 days are absolute unix timestamps instead of relative seconds.
+	 */
+	private static final int RELATIVE_EXPIRY_LIMIT = 60 * 60 * 24 * 30;
+	
+	private final Map<String, Entry> entries;
+	
+	private final long ttlMillis;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	private final AtomicLong stalePuts = new AtomicLong();
+	
+	private final Invalidations invalidations = new Invalidations();
+	
+	public DocumentCache(final int maxEntries, long ttlSeconds) {
+		this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * @param id document id
+	 * @return copy of cached document, null if not cached or expired.
+	 */
+	public JavaMapDocument get(String id) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(id);
+			if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+				entries.remove(id);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.document.clone();
+	}
+	
+	/**
+	 * @return stamp to take before reading a document from database, to be passed to {@link #put(JavaMapDocument, long)}.
+	 */
+	public long readStamp() {
+		synchronized (entries) {
+			return invalidations.current();
+		}
+	}
+	
+	/**
+	 * Caches a copy of given document, read from database just now.
+	 * @param document {@link JavaMapDocument} read from database
+	 */
+	public void put(JavaMapDocument document) {
+		put(document, readStamp());
+	}
+	
+	/**
+	 * Caches a copy of given document, unless its id was invalidated after the read started or a version with a newer CAS is cached.
+	 * @param document {@link JavaMapDocument} read from database
+	 * @param readStamp stamp returned by {@link #readStamp()} before the document was read
+	 */
+	public void put(JavaMapDocument document, long readStamp) {
+		long now = System.currentTimeMillis();
+		long expiresAt = now + ttlMillis;
+		int expiry = document.getExpiry();
+		if (expiry > 0) {
+			long documentExpiresAt = expiry > RELATIVE_EXPIRY_LIMIT ? TimeUnit.SECONDS.toMillis(expiry) : now + TimeUnit.SECONDS.toMillis(expiry);
+			expiresAt = Math.min(expiresAt, documentExpiresAt);
+		}
+		Entry entry = new Entry(document.clone(), expiresAt);
+		synchronized (entries) {
+			Entry cached = entries.get(document.getId());
+			if (invalidations.isStale(document.getId(), readStamp) || (cached != null && cached.document.getCas() > document.getCas())) {
+				stalePuts.incrementAndGet();
+				return;
+			}
+			entries.put(document.getId(), entry);
+		}
+	}
+	
+	/**
+	 * Removes document with given id, called whenever the document is written through the connector. 
+	 * Documents of this id read before the invalidation are not cached anymore.
+	 * @param id document id
+	 */
+	public void invalidate(String id) {
+		synchronized (entries) {
+			invalidations.record(id);
+			if (entries.remove(id) != null) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			invalidations.clear();
+		}
+	}
+	
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	@Override
+	public int getSize() {
+		return size();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of documents not cached because they were invalidated after being read, or a newer version was cached.
+	 */
+	@Override
+	public long getStalePuts() {
+		return stalePuts.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "Entries: " + size() + ", Hits: " + getHits() + ", Misses: " + getMisses() + ", Evictions: " + getEvictions() + ", Stale Puts: " + getStalePuts();
+	}
+	
+	private static final class Entry {
+		
+		private final JavaMapDocument document;
+		
+		private final long expiresAt;
+		
+		Entry(JavaMapDocument document, long expiresAt) {
+			this.document = document;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+/**
+ * JMX view of the {@link DocumentCache} of the bucket of one connector config.
+ * @author manik
+ *
+ */
+public interface DocumentCacheMBean {
+	
+	/**
+	 * @return number of documents cached.
+	 */
+	int getSize();
+	
+	long getHits();
+	
+	long getMisses();
+	
+	/**
+	 * @return documents removed because the cache was full, they expired or were invalidated.
+	 */
+	long getEvictions();
+	
+	/**
+	 * @return documents not cached because they were invalidated after being read, or a newer version was cached.
+	 */
+	long getStalePuts();
+	
+	void clear();
+}
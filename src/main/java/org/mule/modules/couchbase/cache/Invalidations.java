@@ -0,0 +1,68 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Record of the most recent invalidations of a cache, used to drop documents that were read from database before their id was invalidated.
+ * Every invalidation gets a stamp from a sequence. A reader takes the current stamp before reading from database, and its document is stale
+ * if its id was invalidated after that stamp. Only a bounded number of ids is remembered; when older ones are forgotten, documents read
+ * before the forgotten invalidations are treated as stale as well. Not thread-safe, callers synchronize on the cache.
+ * @author manik
+ *
+ */
+final class Invalidations {
+
+	static final int MAX_RECENT_INVALIDATIONS = 10000;
+
+	private final Map<String, Long> stamps = new LinkedHashMap<String, Long>();
+
+	private long stamp;
+
+	/**
+	 * Stamp of the latest forgotten invalidation, documents read before it can not be proven fresh.
+	 */
+	private long forgotten;
+
+	/**
+	 * @return stamp to take before reading a document from database.
+	 */
+	long current() {
+		return stamp;
+	}
+
+	/**
+	 * Records an invalidation of given id.
+	 * @param id document id
+	 */
+	void record(String id) {
+		stamps.remove(id);
+		stamps.put(id, ++stamp);
+		if (stamps.size() > MAX_RECENT_INVALIDATIONS) {
+			Iterator<Long> eldest = stamps.values().iterator();
+			forgotten = eldest.next();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * @param id document id
+	 * @param readStamp stamp taken before the document was read from database
+	 * @return true if the document may have been invalidated after it was read.
+	 */
+	boolean isStale(String id, long readStamp) {
+		if (readStamp < forgotten) return true;
+		Long invalidated = stamps.get(id);
+		return invalidated != null && invalidated > readStamp;
+	}
+
+	void clear() {
+		stamps.clear();
+		forgotten = stamp;
+	}
+}
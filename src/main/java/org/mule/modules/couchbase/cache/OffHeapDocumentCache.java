@@ -0,0 +1,303 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+/**
+ * Cache of raw JSON documents kept outside of the Java heap, in direct {@link ByteBuffer} slabs allocated once up to the configured memory cap.
+ * Memory is divided in fixed size blocks, a document occupies as many blocks as its JSON needs. Only the id, CAS, expiry and block list of a document 
+ * stay on heap. When memory is full, least recently used documents are evicted. Documents are decoded into {@link JavaMapDocument} only when their content is accessed.
+ * Like {@link DocumentCache}, a document is not cached if its id was invalidated after it was read or a version with a newer CAS is cached.
+ * @author manik
+ *
+ */
+public class OffHeapDocumentCache implements OffHeapDocumentCacheMBean {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final int RELATIVE_EXPIRY_LIMIT = 60 * 60 * 24 * 30;
+	
+	static final int BLOCK_SIZE = 512;
+	
+	/**
+	 * Largest cache size in MB accepted by the config, keeping the free block list of the cache on heap at 128 MB.
+	 */
+	public static final int MAX_SIZE_MB = 16384;
+	
+	private static final int SLAB_SIZE = 64 * 1024 * 1024;
+	
+	private static final int BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+	
+	private final ByteBuffer[] slabs;
+	
+	private final int[] freeBlocks;
+	
+	private int freeCount;
+	
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	
+	private final long ttlMillis;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	private final AtomicLong stalePuts = new AtomicLong();
+	
+	private final Invalidations invalidations = new Invalidations();
+	
+	/**
+	 * @param maxBytes memory cap, rounded down to whole blocks
+	 * @param ttlSeconds time to live of cached documents
+	 */
+	public OffHeapDocumentCache(long maxBytes, long ttlSeconds) {
+		long totalBlocks = Math.min(maxBytes / BLOCK_SIZE, Integer.MAX_VALUE);
+		this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.freeBlocks = new int[(int) totalBlocks];
+		for (int block = 0; block < freeBlocks.length; block++) {
+			freeBlocks[block] = freeBlocks.length - 1 - block;
+		}
+		this.freeCount = freeBlocks.length;
+		int slabCount = (int) ((totalBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB);
+		this.slabs = new ByteBuffer[slabCount];
+		for (int slab = 0; slab < slabCount; slab++) {
+			long slabBlocks = Math.min(BLOCKS_PER_SLAB, totalBlocks - (long) slab * BLOCKS_PER_SLAB);
+			slabs[slab] = ByteBuffer.allocateDirect((int) slabBlocks * BLOCK_SIZE);
+		}
+	}
+	
+	/**
+	 * @param id document id
+	 * @return document decoded from cached JSON, null if not cached or expired.
+	 */
+	public JavaMapDocument get(String id) {
+		Entry entry;
+		byte[] json;
+		synchronized (entries) {
+			entry = entries.get(id);
+			if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+				remove(id);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+			json = entry == null ? null : read(entry);
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return JavaMapDocument.fromRawJson(id, entry.cas, entry.expiry, new String(json, UTF_8));
+	}
+	
+	/**
+	 * @return stamp to take before reading a document from database, to be passed to {@link #put(String, byte[], long, int, long)}.
+	 */
+	public long readStamp() {
+		synchronized (entries) {
+			return invalidations.current();
+		}
+	}
+	
+	/**
+	 * Caches the raw JSON of a document read from database just now. Documents larger than the whole cache are not cached.
+	 * @param id document id
+	 * @param json raw JSON content
+	 * @param cas document CAS
+	 * @param expiry document expiry as returned by server
+	 */
+	public void put(String id, byte[] json, long cas, int expiry) {
+		put(id, json, cas, expiry, readStamp());
+	}
+	
+	/**
+	 * Caches the raw JSON of a document, unless its id was invalidated after the read started or a version with a newer CAS is cached.
+	 * Documents larger than the whole cache are not cached.
+	 * @param id document id
+	 * @param json raw JSON content
+	 * @param cas document CAS
+	 * @param expiry document expiry as returned by server
+	 * @param readStamp stamp returned by {@link #readStamp()} before the document was read
+	 */
+	public void put(String id, byte[] json, long cas, int expiry, long readStamp) {
+		int blocksNeeded = Math.max(1, (json.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		if (blocksNeeded > freeBlocks.length) return;
+		long now = System.currentTimeMillis();
+		long expiresAt = now + ttlMillis;
+		if (expiry > 0) {
+			long documentExpiresAt = expiry > RELATIVE_EXPIRY_LIMIT ? TimeUnit.SECONDS.toMillis(expiry) : now + TimeUnit.SECONDS.toMillis(expiry);
+			expiresAt = Math.min(expiresAt, documentExpiresAt);
+		}
+		synchronized (entries) {
+			Entry cached = entries.get(id);
+			if (invalidations.isStale(id, readStamp) || (cached != null && cached.cas > cas)) {
+				stalePuts.incrementAndGet();
+				return;
+			}
+			remove(id);
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (freeCount < blocksNeeded && eldest.hasNext()) {
+				Entry evicted = eldest.next();
+				eldest.remove();
+				release(evicted);
+				evictions.incrementAndGet();
+			}
+			int[] blocks = new int[blocksNeeded];
+			for (int i = 0; i < blocksNeeded; i++) {
+				blocks[i] = freeBlocks[--freeCount];
+			}
+			Entry entry = new Entry(blocks, json.length, cas, expiry, expiresAt);
+			write(entry, json);
+			entries.put(id, entry);
+		}
+	}
+	
+	/**
+	 * Removes document with given id, called whenever the document is written through the connector. 
+	 * Documents of this id read before the invalidation are not cached anymore.
+	 * @param id document id
+	 */
+	public void invalidate(String id) {
+		synchronized (entries) {
+			invalidations.record(id);
+			if (remove(id)) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			for (Entry entry : entries.values()) {
+				release(entry);
+			}
+			entries.clear();
+			invalidations.clear();
+		}
+	}
+	
+	private boolean remove(String id) {
+		Entry entry = entries.remove(id);
+		if (entry == null) return false;
+		release(entry);
+		return true;
+	}
+	
+	private void release(Entry entry) {
+		for (int block : entry.blocks) {
+			freeBlocks[freeCount++] = block;
+		}
+	}
+	
+	private void write(Entry entry, byte[] json) {
+		int offset = 0;
+		for (int block : entry.blocks) {
+			int length = Math.min(BLOCK_SIZE, json.length - offset);
+			ByteBuffer slab = slabs[block / BLOCKS_PER_SLAB];
+			slab.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+			slab.put(json, offset, length);
+			offset += length;
+		}
+	}
+	
+	private byte[] read(Entry entry) {
+		byte[] json = new byte[entry.length];
+		int offset = 0;
+		for (int block : entry.blocks) {
+			int length = Math.min(BLOCK_SIZE, entry.length - offset);
+			ByteBuffer slab = slabs[block / BLOCKS_PER_SLAB];
+			slab.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+			slab.get(json, offset, length);
+			offset += length;
+		}
+		return json;
+	}
+	
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	@Override
+	public int getSize() {
+		return size();
+	}
+	
+	/**
+	 * @return bytes of off-heap memory occupied by cached documents, in whole blocks.
+	 */
+	@Override
+	public long getUsedBytes() {
+		synchronized (entries) {
+			return (long) (freeBlocks.length - freeCount) * BLOCK_SIZE;
+		}
+	}
+	
+	@Override
+	public long getCapacityBytes() {
+		return (long) freeBlocks.length * BLOCK_SIZE;
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of documents not cached because they were invalidated after being read, or a newer version was cached.
+	 */
+	@Override
+	public long getStalePuts() {
+		return stalePuts.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "Entries: " + size() + ", Used Bytes: " + getUsedBytes() + "/" + getCapacityBytes() + ", Hits: " + getHits() + ", Misses: " + getMisses() + ", Evictions: " + getEvictions() + ", Stale Puts: " + getStalePuts();
+	}
+	
+	private static final class Entry {
+		
+		private final int[] blocks;
+		
+		private final int length;
+		
+		private final long cas;
+		
+		private final int expiry;
+		
+		private final long expiresAt;
+		
+		Entry(int[] blocks, int length, long cas, int expiry, long expiresAt) {
+			this.blocks = blocks;
+			this.length = length;
+			this.cas = cas;
+			this.expiry = expiry;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
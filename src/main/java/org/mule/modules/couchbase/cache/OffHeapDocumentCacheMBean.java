@@ -0,0 +1,41 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+/**
+ * JMX view of the {@link OffHeapDocumentCache} of the bucket of one connector config.
+ * @author manik
+ *
+ */
+public interface OffHeapDocumentCacheMBean {
+	
+	/**
+	 * @return number of documents cached.
+	 */
+	int getSize();
+	
+	/**
+	 * @return bytes of off-heap memory occupied by cached documents, in whole blocks.
+	 */
+	long getUsedBytes();
+	
+	long getCapacityBytes();
+	
+	long getHits();
+	
+	long getMisses();
+	
+	/**
+	 * @return documents removed to make room, because they expired or were invalidated.
+	 */
+	long getEvictions();
+	
+	/**
+	 * @return documents not cached because they were invalidated after being read, or a newer version was cached.
+	 */
+	long getStalePuts();
+	
+	void clear();
+}
@@ -0,0 +1,84 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key. The first caller runs the request, callers arriving while it is in flight 
+ * wait for it and receive the same result or exception. Nothing is kept once the request completes.
+ * @author manik
+ *
+ * @param <V> type of the result
+ */
+public class SingleFlight<V> implements SingleFlightMBean {
+	
+	private final ConcurrentMap<String, FutureTask<V>> inFlight = new ConcurrentHashMap<String, FutureTask<V>>();
+	
+	private final AtomicLong requests = new AtomicLong();
+	
+	private final AtomicLong coalesced = new AtomicLong();
+	
+	/**
+	 * @param key key of the request, usually document id
+	 * @param request request to run if none is in flight for the key
+	 * @return result of the request
+	 */
+	public V execute(String key, Callable<V> request) {
+		FutureTask<V> task = new FutureTask<V>(request);
+		FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+		if (existing == null) {
+			requests.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+			}
+			return await(task);
+		}
+		coalesced.incrementAndGet();
+		return await(existing);
+	}
+	
+	private V await(FutureTask<V> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for in-flight request", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+	
+	/**
+	 * @return number of requests actually run.
+	 */
+	@Override
+	public long getRequests() {
+		return requests.get();
+	}
+	
+	/**
+	 * @return number of calls that shared the result of a request already in flight.
+	 */
+	@Override
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "Requests: " + getRequests() + ", Coalesced: " + getCoalesced();
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.cache;
+
+/**
+ * JMX view of the {@link SingleFlight} coalescing concurrent gets of one connector config.
+ * @author manik
+ *
+ */
+public interface SingleFlightMBean {
+	
+	/**
+	 * @return number of requests actually run.
+	 */
+	long getRequests();
+	
+	/**
+	 * @return number of calls that shared the result of a request already in flight.
+	 */
+	long getCoalesced();
+}
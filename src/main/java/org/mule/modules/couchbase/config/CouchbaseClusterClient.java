@@ -4,95 +4,476 @@
  */
 package org.mule.modules.couchbase.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+import org.mule.modules.couchbase.cache.DocumentCache;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.cache.SingleFlight;
+import org.mule.modules.couchbase.metrics.ConnectorMetrics;
+import org.mule.modules.couchbase.metrics.CouchbaseEventListener;
+import org.mule.modules.couchbase.query.PreparedStatementCache;
 import org.mule.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.couchbase.client.core.metrics.DefaultLatencyMetricsCollectorConfig;
+import com.couchbase.client.core.metrics.DefaultMetricsCollectorConfig;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.Cluster;
 import com.couchbase.client.java.CouchbaseCluster;
+import com.couchbase.client.java.document.RawJsonDocument;
 import com.couchbase.client.java.env.CouchbaseEnvironment;
 import com.couchbase.client.java.env.DefaultCouchbaseEnvironment;
 
+/**
+ * Holds the {@link Cluster} and {@link CouchbaseEnvironment} for one set of seed nodes and environment settings. 
+ * Configs connecting with the same seed nodes and environment settings share the client, configs pointing at different 
+ * clusters or using different settings get their own. The cluster is disconnected when the last config sharing it disconnects.
+ * @author manik
+ *
+ */
 public class CouchbaseClusterClient {
 	
-	private Logger LOG = LoggerFactory.getLogger(CouchbaseClusterClient.class);
+	private static final Logger LOG = LoggerFactory.getLogger(CouchbaseClusterClient.class);
+	
+	private static final Map<String, CouchbaseClusterClient> CLIENTS = new HashMap<String, CouchbaseClusterClient>();
 	
-	private static final class SingleConnectionHolder {
-		public static final CouchbaseClusterClient INSTANCE = new CouchbaseClusterClient();
+	/**
+	 * Metrics by client key and bucket. Entries outlive their clients, so that counters survive reconnects and pooled configs being evicted.
+	 */
+	private static final Map<String, SharedMetrics> METRICS = new HashMap<String, SharedMetrics>();
+	
+	/**
+	 * Registers a config on the client shared by all configs using given seed nodes and environment settings of given config, 
+	 * creating the client with its environment and cluster on first registration. Lookup, creation and reference counting happen 
+	 * under the same lock as {@link #disconnect()}, so a client being released is never handed out again.
+	 * Every call must be paired with {@link #disconnect()}.
+	 * @param clusterSeedNodes comma separated list of cluster nodes
+	 * @param config {@link CouchbaseConnectorConfig} providing environment settings
+	 * @return {@link CouchbaseClusterClient}
+	 */
+	public static CouchbaseClusterClient connect(final String clusterSeedNodes, final CouchbaseConnectorConfig config){
+		List<String> seedNodes = parseSeedNodes(clusterSeedNodes);
+		String key = clientKey(seedNodes, config);
+		synchronized (CLIENTS) {
+			CouchbaseClusterClient client = CLIENTS.get(key);
+			if(client == null){
+				LOG.debug("Instantiating new Couchbase Cluster for {}", seedNodes);
+				client = new CouchbaseClusterClient(key, seedNodes);
+				client.open(config);
+				CLIENTS.put(key, client);
+			} else {
+				LOG.debug("Using Existing Cluster for {}", seedNodes);
+			}
+			client.references++;
+			return client;
+		}
 	}
 	
-	private CouchbaseClusterClient(){
-		
+	private static List<String> parseSeedNodes(String clusterSeedNodes){
+		List<String> seedNodes = new ArrayList<String>();
+		for (String node : StringUtils.split(clusterSeedNodes, ", ;")) {
+			seedNodes.add(node.trim());
+		}
+		Collections.sort(seedNodes);
+		return seedNodes;
 	}
 	
-	public static CouchbaseClusterClient get(){
-		return SingleConnectionHolder.INSTANCE;
+	private static String clientKey(List<String> seedNodes, CouchbaseConnectorConfig config){
+		return StringUtils.join(seedNodes, ',')
+				+ "|http:" + config.isBootstrapHttpEnabled() + ":" + config.getBootstrapHttpDirectPort() + ":" + config.getBootstrapHttpSslPort()
+				+ "|carrier:" + config.isBootstrapCarrierEnabled() + ":" + config.getBootstrapCarrierDirectPort() + ":" + config.getBootstrapCarrierSslPort()
+				+ "|ssl:" + config.isSslEnabled() + ":" + config.getSslKeystoreFile()
+				+ "|performance:" + performanceKey(config)
+				+ "|metrics:" + config.getRuntimeMetricsInterval() + ":" + config.getNetworkLatencyMetricsInterval();
 	}
 	
-	private Cluster couchbaseCluster;
+	private static String performanceKey(CouchbaseConnectorConfig config){
+		PerformanceProfile profile = config.getPerformanceProfile();
+		return profile.kvEndpoints(config.getKvEndpoints())
+				+ ":" + profile.ioPoolSize(config.getIoPoolSize())
+				+ ":" + profile.computationPoolSize(config.getComputationPoolSize())
+				+ ":" + profile.requestBufferSize(config.getRequestBufferSize())
+				+ ":" + profile.kvTimeout(config.getKvTimeout())
+				+ ":" + profile.queryTimeout(config.getQueryTimeout())
+				+ ":" + profile.socketConnectTimeout(config.getSocketConnectTimeout());
+	}
 	
-	private Map<String, Bucket> couchbaseBuckets = new HashMap<String, Bucket>();
+	private final String key;
 	
-	public  Cluster createCluster(final String clusterSeedNodes, final CouchbaseConnectorConfig config){
-		if(couchbaseCluster == null) {
-			synchronized (SingleConnectionHolder.INSTANCE){
-				if(couchbaseCluster == null) {
-					LOG.debug("Instantiating new Couchbase Cluster");
-
-	        		CouchbaseEnvironment env = DefaultCouchbaseEnvironment
-	        				.builder()
-	        				.bootstrapHttpDirectPort(config.getBootstrapHttpDirectPort())
-	        				.bootstrapCarrierDirectPort(config.getBootstrapCarrierDirectPort())
-	        				.bootstrapCarrierSslPort(config.getBootstrapCarrierSslPort())
-	        				.bootstrapCarrierEnabled(config.isBootstrapCarrierEnabled())
-	        				.bootstrapHttpEnabled(config.isBootstrapHttpEnabled())
-	        				.bootstrapHttpSslPort(config.getBootstrapHttpSslPort())
-	        				.sslEnabled(config.isSslEnabled())
-	        				.sslKeystoreFile(config.getSslKeystoreFile())
-	        				.sslKeystorePassword(config.getSslKeystorePassword())
-	        				.build();
-	        		
-					couchbaseCluster = CouchbaseCluster.create(env,clusterSeedNodes);
-				}
-			}
-		} else {
-			LOG.debug("Using Existing Cluster");
+	private final List<String> seedNodes;
+	
+	private CouchbaseClusterClient(String key, List<String> seedNodes){
+		this.key = key;
+		this.seedNodes = seedNodes;
+	}
+	
+	private volatile CouchbaseEnvironment environment;
+	
+	private volatile Cluster couchbaseCluster;
+	
+	private int references;
+	
+	private final ConcurrentMap<BucketKey, Bucket> couchbaseBuckets = new ConcurrentHashMap<BucketKey, Bucket>();
+	
+	private final Set<String> ensuredIndexes = new HashSet<String>();
+	
+	private final ConcurrentMap<String, DocumentCache> documentCaches = new ConcurrentHashMap<String, DocumentCache>();
+	
+	private final ConcurrentMap<String, OffHeapDocumentCache> offHeapDocumentCaches = new ConcurrentHashMap<String, OffHeapDocumentCache>();
+	
+	private final ConcurrentMap<String, SingleFlight<RawJsonDocument>> coalescedGets = new ConcurrentHashMap<String, SingleFlight<RawJsonDocument>>();
+	
+	private final ConcurrentMap<String, PreparedStatementCache> preparedStatementCaches = new ConcurrentHashMap<String, PreparedStatementCache>();
+	
+	private void open(final CouchbaseConnectorConfig config){
+		environment = createEnvironment(config);
+		try {
+			couchbaseCluster = CouchbaseCluster.create(environment, seedNodes);
+		} catch (RuntimeException e) {
+			environment.shutdown();
+			environment = null;
+			throw e;
 		}
+	}
+	
+	private CouchbaseEnvironment createEnvironment(final CouchbaseConnectorConfig config){
+		DefaultCouchbaseEnvironment.Builder builder = DefaultCouchbaseEnvironment
+				.builder()
+				.bootstrapHttpDirectPort(config.getBootstrapHttpDirectPort())
+				.bootstrapCarrierDirectPort(config.getBootstrapCarrierDirectPort())
+				.bootstrapCarrierSslPort(config.getBootstrapCarrierSslPort())
+				.bootstrapCarrierEnabled(config.isBootstrapCarrierEnabled())
+				.bootstrapHttpEnabled(config.isBootstrapHttpEnabled())
+				.bootstrapHttpSslPort(config.getBootstrapHttpSslPort())
+				.sslEnabled(config.isSslEnabled())
+				.sslKeystoreFile(config.getSslKeystoreFile())
+				.sslKeystorePassword(config.getSslKeystorePassword());
+		
+		PerformanceProfile profile = config.getPerformanceProfile();
+		
+		int kvEndpoints = profile.kvEndpoints(config.getKvEndpoints());
+		if(kvEndpoints > 0) builder.kvEndpoints(kvEndpoints);
+		int ioPoolSize = profile.ioPoolSize(config.getIoPoolSize());
+		if(ioPoolSize > 0) builder.ioPoolSize(ioPoolSize);
+		int computationPoolSize = profile.computationPoolSize(config.getComputationPoolSize());
+		if(computationPoolSize > 0) builder.computationPoolSize(computationPoolSize);
+		int requestBufferSize = profile.requestBufferSize(config.getRequestBufferSize());
+		if(requestBufferSize > 0) builder.requestBufferSize(requestBufferSize);
+		long kvTimeout = profile.kvTimeout(config.getKvTimeout());
+		if(kvTimeout > 0) builder.kvTimeout(kvTimeout);
+		long queryTimeout = profile.queryTimeout(config.getQueryTimeout());
+		if(queryTimeout > 0) builder.queryTimeout(queryTimeout);
+		int socketConnectTimeout = profile.socketConnectTimeout(config.getSocketConnectTimeout());
+		if(socketConnectTimeout > 0) builder.socketConnectTimeout(socketConnectTimeout);
 		
+		if(config.getRuntimeMetricsInterval() < 0){
+			builder.runtimeMetricsCollectorConfig(DefaultMetricsCollectorConfig.disabled());
+		} else if(config.getRuntimeMetricsInterval() > 0) {
+			builder.runtimeMetricsCollectorConfig(DefaultMetricsCollectorConfig.create(config.getRuntimeMetricsInterval(), TimeUnit.SECONDS));
+		}
+		if(config.getNetworkLatencyMetricsInterval() < 0){
+			builder.networkLatencyMetricsCollectorConfig(DefaultLatencyMetricsCollectorConfig.disabled());
+		} else if(config.getNetworkLatencyMetricsInterval() > 0) {
+			builder.networkLatencyMetricsCollectorConfig(DefaultLatencyMetricsCollectorConfig.create(config.getNetworkLatencyMetricsInterval(), TimeUnit.SECONDS));
+		}
+		
+		LOG.debug("Creating Couchbase Environment with {} profile, settings {}", profile, performanceKey(config));
+		
+		return builder.build();
+	}
+	
+	/**
+	 * @return key identifying this client by seed nodes and environment settings.
+	 */
+	public String getKey() {
+		return key;
+	}
+	
+	public Cluster getCluster() {
 		return couchbaseCluster;
 	}
 	
+	public CouchbaseEnvironment getEnvironment() {
+		return environment;
+	}
+	
+	/**
+	 * Returns the open bucket for given name and password, opening it on first access. Lookups of already open buckets are lock-free, 
+	 * opening a bucket is serialized so that concurrent first accesses open it only once.
+	 * @param bucketName name of the bucket
+	 * @param password bucket password, may be empty
+	 * @return {@link Bucket}
+	 */
 	public Bucket openBucket(final String bucketName, String password){
-		if (!couchbaseBuckets.containsKey(bucketName)){
-			synchronized (couchbaseBuckets){
-				if (!couchbaseBuckets.containsKey(bucketName)){
-					LOG.debug("Opening new bucket ?", bucketName);
-					if(StringUtils.isEmpty(password)) password = (String) null;
-					Bucket bucket = couchbaseCluster.openBucket(bucketName, password);
-					couchbaseBuckets.put(bucketName, bucket);
+		if(StringUtils.isEmpty(password)) password = null;
+		BucketKey key = new BucketKey(bucketName, password);
+		Bucket bucket = couchbaseBuckets.get(key);
+		if(bucket != null && !bucket.isClosed()){
+			return bucket;
+		}
+		synchronized (couchbaseBuckets){
+			bucket = couchbaseBuckets.get(key);
+			if(bucket == null || bucket.isClosed()){
+				LOG.debug("Opening new bucket {}", bucketName);
+				bucket = couchbaseCluster.openBucket(bucketName, password);
+				couchbaseBuckets.put(key, bucket);
+			}
+		}
+		return bucket;
+	}
+	
+	/**
+	 * Returns the near cache of given bucket, shared by all configs of this cluster using the same bucket and cache settings.
+	 * @param bucketName name of the bucket
+	 * @param maxEntries maximum number of cached documents
+	 * @param ttlSeconds time to live of cached documents
+	 * @return {@link DocumentCache}
+	 */
+	public DocumentCache getDocumentCache(String bucketName, int maxEntries, int ttlSeconds){
+		String cacheKey = bucketName + "|" + maxEntries + "|" + ttlSeconds;
+		DocumentCache cache = documentCaches.get(cacheKey);
+		if(cache == null){
+			DocumentCache created = new DocumentCache(maxEntries, ttlSeconds);
+			cache = documentCaches.putIfAbsent(cacheKey, created);
+			if(cache == null) cache = created;
+		}
+		return cache;
+	}
+	
+	/**
+	 * Returns the {@link SingleFlight} coalescing concurrent gets of the same id on given bucket, shared by all configs of this cluster 
+	 * using the bucket with Coalesce Concurrent Gets enabled, so that gets through different configs and pooled instances share one read.
+	 * @param bucketName name of the bucket
+	 * @return {@link SingleFlight}
+	 */
+	public SingleFlight<RawJsonDocument> getCoalescedGets(String bucketName){
+		SingleFlight<RawJsonDocument> singleFlight = coalescedGets.get(bucketName);
+		if(singleFlight == null){
+			SingleFlight<RawJsonDocument> created = new SingleFlight<RawJsonDocument>();
+			singleFlight = coalescedGets.putIfAbsent(bucketName, created);
+			if(singleFlight == null) singleFlight = created;
+		}
+		return singleFlight;
+	}
+	
+	/**
+	 * Returns the cache of prepared plans of given bucket, shared by all configs of this cluster using the same bucket and cache size, 
+	 * so that a statement is prepared once and not once per config or pooled instance.
+	 * @param bucketName name of the bucket
+	 * @param maxStatements maximum number of cached plans
+	 * @return {@link PreparedStatementCache}
+	 */
+	public PreparedStatementCache getPreparedStatementCache(String bucketName, int maxStatements){
+		String cacheKey = bucketName + "|" + maxStatements;
+		PreparedStatementCache cache = preparedStatementCaches.get(cacheKey);
+		if(cache == null){
+			PreparedStatementCache created = new PreparedStatementCache(maxStatements);
+			cache = preparedStatementCaches.putIfAbsent(cacheKey, created);
+			if(cache == null) cache = created;
+		}
+		return cache;
+	}
+	
+	/**
+	 * Returns the off-heap cache of given bucket, shared by all configs of this cluster using the same bucket and cache settings.
+	 * Memory of the cache is allocated when it is first requested.
+	 * @param bucketName name of the bucket
+	 * @param sizeMb memory cap in megabytes
+	 * @param ttlSeconds time to live of cached documents
+	 * @return {@link OffHeapDocumentCache}
+	 */
+	public synchronized OffHeapDocumentCache getOffHeapDocumentCache(String bucketName, int sizeMb, int ttlSeconds){
+		String cacheKey = bucketName + "|" + sizeMb + "|" + ttlSeconds;
+		OffHeapDocumentCache cache = offHeapDocumentCaches.get(cacheKey);
+		if(cache == null){
+			LOG.info("Allocating {} MB off-heap document cache for bucket {}", sizeMb, bucketName);
+			cache = new OffHeapDocumentCache(sizeMb * 1024L * 1024L, ttlSeconds);
+			offHeapDocumentCaches.put(cacheKey, cache);
+		}
+		return cache;
+	}
+	
+	/**
+	 * Returns the {@link ConnectorMetrics} shared by all configs of this cluster using given bucket, including all pooled instances of a config.
+	 * The first config acquiring them configures the slow operation log, registers the MBeans with the caches and counters of the config 
+	 * and subscribes once to the event bus of the environment with the event listener of the config. The subscription is cancelled and the MBeans 
+	 * are unregistered when the last config releases them, so events are never delivered more than once per cluster and bucket.
+	 * Every call must be paired with {@link #releaseMetrics(String)}.
+	 * @param bucketName name of the bucket
+	 * @param config {@link CouchbaseConnectorConfig} providing monitoring settings
+	 * @return {@link ConnectorMetrics}
+	 * @throws IllegalArgumentException if the event listener of the config cannot be created
+	 */
+	public ConnectorMetrics acquireMetrics(String bucketName, CouchbaseConnectorConfig config){
+		synchronized (METRICS) {
+			SharedMetrics shared = METRICS.get(key + "|" + bucketName);
+			if(shared == null){
+				shared = new SharedMetrics();
+				METRICS.put(key + "|" + bucketName, shared);
+			}
+			if(shared.references == 0){
+				CouchbaseEventListener eventListener = config.createEventListener();
+				shared.metrics.getSlowOperations().configure(bucketName, config.getSlowOperationThreshold(), config.getSlowOperationLogSize(), config.isLogSlowOperations());
+				if(config.isJmxEnabled()){
+					shared.metrics.register(StringUtils.join(seedNodes, ','), bucketName, config.components());
 				}
+				shared.metrics.getSdkEvents().subscribe(environment.eventBus(), StringUtils.join(seedNodes, ',') + "/" + bucketName, eventListener);
 			}
-			LOG.debug("Reusing already open bucket ?", bucketName);
+			shared.references++;
+			return shared.metrics;
 		}
-		return couchbaseBuckets.get(bucketName);
 	}
 	
-	public  void disconnectCluster(){
-		synchronized (couchbaseCluster){
-			if (couchbaseCluster != null){
-				couchbaseCluster.disconnect();
-				couchbaseCluster = null;
-				LOG.info("Disconnected from couchbase cluster");
+	/**
+	 * Releases metrics acquired with {@link #acquireMetrics(String, CouchbaseConnectorConfig)}, unsubscribing from the event bus and unregistering 
+	 * their MBeans when no config uses them anymore.
+	 * @param bucketName name of the bucket
+	 */
+	public void releaseMetrics(String bucketName){
+		synchronized (METRICS) {
+			SharedMetrics shared = METRICS.get(key + "|" + bucketName);
+			if(shared == null || shared.references == 0) return;
+			if(--shared.references == 0){
+				shared.metrics.getSdkEvents().unsubscribe();
+				shared.metrics.unregister();
 			}
 		}
 	}
 	
+	/**
+	 * Creates the primary index and given secondary indexes on the bucket if they do not exist yet. Each index is ensured once per bucket 
+	 * and index definition, so that queries do not pay an index management round-trip while configs of the same bucket with different 
+	 * index settings still get their own indexes. Failures are logged and retried on next connect.
+	 * @param bucket {@link Bucket} to create indexes on.
+	 * @param primaryIndex true to ensure the N1QL primary index.
+	 * @param secondaryIndexes index definitions in the form indexName(field1,field2), may be null.
+	 */
+	public void ensureIndexes(Bucket bucket, boolean primaryIndex, List<String> secondaryIndexes){
+		synchronized (ensuredIndexes){
+			try {
+				String primaryKey = bucket.name() + "|#primary";
+				if(primaryIndex && !ensuredIndexes.contains(primaryKey)){
+					LOG.debug("Ensuring primary index on bucket {}", bucket.name());
+					bucket.bucketManager().createN1qlPrimaryIndex(true, false);
+					ensuredIndexes.add(primaryKey);
+				}
+				if(secondaryIndexes != null){
+					for (String definition : secondaryIndexes) {
+						String indexKey = bucket.name() + "|" + StringUtils.deleteWhitespace(definition);
+						if(ensuredIndexes.contains(indexKey)) continue;
+						createIndex(bucket, definition);
+						ensuredIndexes.add(indexKey);
+					}
+				}
+			} catch (RuntimeException e) {
+				LOG.warn("Unable to ensure N1QL indexes on bucket " + bucket.name() + ", will retry on next connect.", e);
+			}
+		}
+	}
+	
+	private void createIndex(Bucket bucket, String definition){
+		int open = definition.indexOf('(');
+		if(open <= 0 || !definition.trim().endsWith(")")){
+			throw new IllegalArgumentException("Invalid index definition '" + definition + "', expected indexName(field1,field2)");
+		}
+		String indexName = definition.substring(0, open).trim();
+		List<Object> fields = new ArrayList<Object>();
+		for (String field : definition.substring(open + 1, definition.lastIndexOf(')')).split(",")) {
+			if(!StringUtils.isBlank(field)) fields.add(field.trim());
+		}
+		LOG.debug("Ensuring index {} on bucket {}", indexName, bucket.name());
+		bucket.bucketManager().createN1qlIndex(indexName, true, false, fields.toArray());
+	}
+	
+	/**
+	 * Unregisters a config from this client. When no config uses it anymore the client is removed from the shared clients, 
+	 * under the same lock as {@link #connect(String, CouchbaseConnectorConfig)}, and its cluster and environment are shut down.
+	 */
+	public void disconnect(){
+		synchronized (CLIENTS) {
+			if(references > 0) references--;
+			if(references > 0 || couchbaseCluster == null) return;
+			CLIENTS.remove(key);
+		}
+		synchronized (ensuredIndexes){
+			ensuredIndexes.clear();
+		}
+		documentCaches.clear();
+		for (OffHeapDocumentCache cache : offHeapDocumentCaches.values()) {
+			cache.clear();
+		}
+		offHeapDocumentCaches.clear();
+		coalescedGets.clear();
+		preparedStatementCaches.clear();
+		synchronized (couchbaseBuckets){
+			couchbaseBuckets.clear();
+		}
+		try {
+			couchbaseCluster.disconnect();
+			environment.shutdown();
+		} finally {
+			couchbaseCluster = null;
+			environment = null;
+		}
+		LOG.info("Disconnected from couchbase cluster {}", seedNodes);
+	}
+	
 	public  boolean isConnected(){
 		return couchbaseCluster != null;
 	}
+	
+	/**
+	 * Metrics of one cluster and bucket with the number of configs using them.
+	 */
+	private static final class SharedMetrics {
+		
+		private final ConnectorMetrics metrics = new ConnectorMetrics();
+		
+		private int references;
+	}
+	
+	/**
+	 * Identifies an open bucket of this cluster by bucket name and credentials.
+	 */
+	private static final class BucketKey {
+		
+		private final String bucketName;
+		
+		private final String password;
+		
+		private final int hash;
+		
+		BucketKey(String bucketName, String password) {
+			this.bucketName = bucketName;
+			this.password = password;
+			int result = bucketName == null ? 0 : bucketName.hashCode();
+			result = 31 * result + (password == null ? 0 : password.hashCode());
+			this.hash = result;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof BucketKey)) return false;
+			BucketKey other = (BucketKey) obj;
+			return StringUtils.equals(bucketName, other.bucketName)
+					&& StringUtils.equals(password, other.password);
+		}
+	}
 
 }
@@ -4,6 +4,10 @@
  */
 package org.mule.modules.couchbase.config;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.mule.api.ConnectionException;
 import org.mule.api.ConnectionExceptionCode;
 import org.mule.api.annotations.Configurable;
@@ -19,9 +23,19 @@ import org.mule.api.annotations.display.Placement;
 import org.mule.api.annotations.display.Summary;
 import org.mule.api.annotations.param.ConnectionKey;
 import org.mule.api.annotations.param.Default;
+import org.mule.extension.annotations.param.Optional;
+import org.mule.modules.couchbase.cache.DocumentCache;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.cache.SingleFlight;
+import org.mule.modules.couchbase.metrics.ConnectorMetrics;
+import org.mule.modules.couchbase.metrics.CouchbaseEventListener;
+import org.mule.modules.couchbase.query.PreparedStatementCache;
+import org.mule.modules.couchbase.retry.CasRetryMetrics;
+import org.mule.util.ClassUtils;
 import org.mule.util.StringUtils;
 
 import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.RawJsonDocument;
 
 @ConnectionManagement(friendlyName = "Configuration", configElementName="couchbase-config")
 public class CouchbaseConnectorConfig {
@@ -98,6 +112,188 @@ public class CouchbaseConnectorConfig {
 	@Summary("SSL must be enabled for this to use.")
 	private  int bootstrapCarrierSslPort;
 	
+	@Configurable
+	@Default("DEFAULT")
+	@Placement(group="Profile",order=1,tab="Performance")
+	@FriendlyName("Performance Profile")
+	@Summary("Preset for the settings below. Settings left at 0 take the value of the profile, or the SDK default.")
+	private PerformanceProfile performanceProfile = PerformanceProfile.DEFAULT;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="I/O",order=2,tab="Performance")
+	@FriendlyName("KV Endpoints per Node")
+	@Summary("Number of key-value connections opened to every node. 0 uses the profile value.")
+	private int kvEndpoints;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="I/O",order=2,tab="Performance")
+	@FriendlyName("I/O Pool Size")
+	@Summary("Number of I/O threads. 0 uses the profile value.")
+	private int ioPoolSize;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="I/O",order=2,tab="Performance")
+	@FriendlyName("Computation Pool Size")
+	@Summary("Number of computation threads. 0 uses the profile value.")
+	private int computationPoolSize;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="I/O",order=2,tab="Performance")
+	@FriendlyName("Request Buffer Size")
+	@Summary("Size of the request ring buffer, must be a power of two. 0 uses the profile value.")
+	private int requestBufferSize;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="Timeouts",order=3,tab="Performance")
+	@FriendlyName("KV Timeout (ms)")
+	@Summary("Timeout of key-value operations in milliseconds. 0 uses the profile value.")
+	private long kvTimeout;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="Timeouts",order=3,tab="Performance")
+	@FriendlyName("Query Timeout (ms)")
+	@Summary("Timeout of N1QL queries in milliseconds. 0 uses the profile value.")
+	private long queryTimeout;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="Timeouts",order=3,tab="Performance")
+	@FriendlyName("Socket Connect Timeout (ms)")
+	@Summary("Timeout of opening a socket to a node in milliseconds. 0 uses the profile value.")
+	private int socketConnectTimeout;
+	
+	@Configurable
+	@Default("false")
+	@Placement(group="Requests",order=4,tab="Performance")
+	@FriendlyName("Coalesce Concurrent Gets")
+	@Summary("Concurrent Get Document calls for the same id, without locking or refreshing expiration time, share one request to database.")
+	private boolean coalesceGets;
+	
+	@Configurable
+	@Default("false")
+	@Placement(group="Near Cache",order=1,tab="Caching")
+	@FriendlyName("Enable Near Cache")
+	@Summary("Keeps documents read by Get Document in memory. Documents written through this connector are evicted, changes made by other clients are seen after the time to live.")
+	private boolean nearCacheEnabled;
+	
+	@Configurable
+	@Default("10000")
+	@Placement(group="Near Cache",order=1,tab="Caching")
+	@FriendlyName("Maximum Entries")
+	@Summary("Maximum number of cached documents, least recently used documents are evicted first.")
+	private int nearCacheMaxEntries = 10000;
+	
+	@Configurable
+	@Default("60")
+	@Placement(group="Near Cache",order=1,tab="Caching")
+	@FriendlyName("Time to Live (seconds)")
+	@Summary("Time after which a cached document is read again from database. Documents expiring earlier on the server are evicted at their expiry.")
+	private int nearCacheTtlSeconds = 60;
+	
+	@Configurable
+	@Default("false")
+	@Placement(group="Off-Heap Cache",order=2,tab="Caching")
+	@FriendlyName("Enable Off-Heap Cache")
+	@Summary("Keeps raw JSON of documents read by Get Document outside of the Java heap, consulted after the near cache. Documents written through this connector are evicted.")
+	private boolean offHeapCacheEnabled;
+	
+	@Configurable
+	@Default("256")
+	@Placement(group="Off-Heap Cache",order=2,tab="Caching")
+	@FriendlyName("Memory Cap (MB)")
+	@Summary("Direct memory allocated for cached documents, between 1 and 16384. Least recently used documents are evicted when it is full. JVM -XX:MaxDirectMemorySize must allow it.")
+	private int offHeapCacheSizeMb = 256;
+	
+	@Configurable
+	@Default("300")
+	@Placement(group="Off-Heap Cache",order=2,tab="Caching")
+	@FriendlyName("Time to Live (seconds)")
+	@Summary("Time after which a cached document is read again from database.")
+	private int offHeapCacheTtlSeconds = 300;
+	
+	@Configurable
+	@Default("true")
+	@Placement(group="N1QL Indexes",order=1,tab="N1QL")
+	@FriendlyName("Ensure Primary Index")
+	@Summary("Creates the N1QL primary index of the bucket, if it does not exist, once when connecting. Enabled by default, as earlier versions created it before running queries. Disable it when queries are covered by secondary indexes.")
+	private boolean ensurePrimaryIndex = true;
+	
+	@Configurable
+	@Optional
+	@Placement(group="N1QL Indexes",order=1,tab="N1QL")
+	@FriendlyName("Secondary Indexes")
+	@Summary("Index definitions in the form indexName(field1,field2) to create, if they do not exist, once when connecting.")
+	private List<String> secondaryIndexes;
+	
+	@Configurable
+	@Default("500")
+	@Placement(group="N1QL Queries",order=2,tab="N1QL")
+	@FriendlyName("Prepared Statement Cache Size")
+	@Summary("Maximum number of distinct statements kept as prepared statements by queries using the prepared statement option.")
+	private int preparedStatementCacheSize = 500;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="Query Profiling",order=3,tab="N1QL")
+	@FriendlyName("Profile Every Nth Execution")
+	@Summary("Runs the first and then every Nth execution of each statement with Execute Query with profile=timings, and exposes the latest profile with the query statistics. Requires Couchbase Server 5.0 or later. 0 disables sampling.")
+	private int queryProfileSampleEvery;
+	
+	@Configurable
+	@Default("true")
+	@Placement(group="JMX",order=1,tab="Monitoring")
+	@FriendlyName("Register Metrics MBeans")
+	@Summary("Exposes count, errors and latency percentiles of every operation as MBeans under org.mule.modules.couchbase. Metrics are recorded either way.")
+	private boolean jmxEnabled = true;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="SDK Metrics",order=2,tab="Monitoring")
+	@FriendlyName("Runtime Metrics Interval (seconds)")
+	@Summary("How often the SDK publishes runtime metrics on its event bus. 0 uses the SDK default of one hour, a negative value disables them.")
+	private int runtimeMetricsInterval;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="SDK Metrics",order=2,tab="Monitoring")
+	@FriendlyName("Network Latency Metrics Interval (seconds)")
+	@Summary("How often the SDK publishes latency percentiles per node, service and request type. 0 uses the SDK default of one hour, a negative value disables them.")
+	private int networkLatencyMetricsInterval;
+	
+	@Configurable
+	@Optional
+	@Placement(group="SDK Metrics",order=2,tab="Monitoring")
+	@FriendlyName("Event Listener Class")
+	@Summary("Class implementing org.mule.modules.couchbase.metrics.CouchbaseEventListener that receives every SDK event once, tagged with the seed nodes and bucket. Configs sharing the cluster and bucket use the listener of the first one connected.")
+	private String eventListenerClass;
+	
+	@Configurable
+	@Default("0")
+	@Placement(group="Slow Operations",order=3,tab="Monitoring")
+	@FriendlyName("Slow Operation Threshold (ms)")
+	@Summary("Operations taking longer are recorded in the slow operation log MBean with their id or statement hash, payload size and retries. 0 disables the log.")
+	private long slowOperationThreshold;
+	
+	@Configurable
+	@Default("100")
+	@Placement(group="Slow Operations",order=3,tab="Monitoring")
+	@FriendlyName("Slow Operation Log Size")
+	@Summary("Number of most recent slow operations kept.")
+	private int slowOperationLogSize = 100;
+	
+	@Configurable
+	@Default("false")
+	@Placement(group="Slow Operations",order=3,tab="Monitoring")
+	@FriendlyName("Log Slow Operations")
+	@Summary("Also log every slow operation as a warning.")
+	private boolean logSlowOperations;
+	
 	public boolean isSslEnabled() {
 		return sslEnabled;
 	}
@@ -154,6 +350,193 @@ public class CouchbaseConnectorConfig {
 	}
 	
 	
+	public PerformanceProfile getPerformanceProfile() {
+		return performanceProfile;
+	}
+	public void setPerformanceProfile(PerformanceProfile performanceProfile) {
+		this.performanceProfile = performanceProfile;
+	}
+	public int getKvEndpoints() {
+		return kvEndpoints;
+	}
+	public void setKvEndpoints(int kvEndpoints) {
+		this.kvEndpoints = kvEndpoints;
+	}
+	public int getIoPoolSize() {
+		return ioPoolSize;
+	}
+	public void setIoPoolSize(int ioPoolSize) {
+		this.ioPoolSize = ioPoolSize;
+	}
+	public int getComputationPoolSize() {
+		return computationPoolSize;
+	}
+	public void setComputationPoolSize(int computationPoolSize) {
+		this.computationPoolSize = computationPoolSize;
+	}
+	public int getRequestBufferSize() {
+		return requestBufferSize;
+	}
+	public void setRequestBufferSize(int requestBufferSize) {
+		this.requestBufferSize = requestBufferSize;
+	}
+	public long getKvTimeout() {
+		return kvTimeout;
+	}
+	public void setKvTimeout(long kvTimeout) {
+		this.kvTimeout = kvTimeout;
+	}
+	public long getQueryTimeout() {
+		return queryTimeout;
+	}
+	public void setQueryTimeout(long queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+	public int getSocketConnectTimeout() {
+		return socketConnectTimeout;
+	}
+	public void setSocketConnectTimeout(int socketConnectTimeout) {
+		this.socketConnectTimeout = socketConnectTimeout;
+	}
+	public boolean isCoalesceGets() {
+		return coalesceGets;
+	}
+	public void setCoalesceGets(boolean coalesceGets) {
+		this.coalesceGets = coalesceGets;
+	}
+	
+	/**
+	 * Validates the performance settings.
+	 * @throws IllegalArgumentException if a setting is out of range
+	 */
+	public void validatePerformanceSettings() {
+		if(kvEndpoints < 0 || ioPoolSize < 0 || computationPoolSize < 0 || requestBufferSize < 0 
+				|| kvTimeout < 0 || queryTimeout < 0 || socketConnectTimeout < 0 || queryProfileSampleEvery < 0){
+			throw new IllegalArgumentException("Performance settings must not be negative");
+		}
+		int bufferSize = getPerformanceProfile().requestBufferSize(requestBufferSize);
+		if(bufferSize > 0 && Integer.bitCount(bufferSize) != 1){
+			throw new IllegalArgumentException("Request Buffer Size must be a power of two, was " + bufferSize);
+		}
+		if(slowOperationThreshold < 0 || slowOperationLogSize < 1){
+			throw new IllegalArgumentException("Slow Operation Threshold must not be negative and Slow Operation Log Size must be at least 1");
+		}
+		if(nearCacheEnabled && nearCacheMaxEntries < 1){
+			throw new IllegalArgumentException("Near Cache Maximum Entries must be at least 1, was " + nearCacheMaxEntries);
+		}
+		if(offHeapCacheEnabled && (offHeapCacheSizeMb < 1 || offHeapCacheSizeMb > OffHeapDocumentCache.MAX_SIZE_MB)){
+			throw new IllegalArgumentException("Off-Heap Cache Memory Cap (MB) must be between 1 and " + OffHeapDocumentCache.MAX_SIZE_MB + ", was " + offHeapCacheSizeMb);
+		}
+	}
+	
+	public boolean isNearCacheEnabled() {
+		return nearCacheEnabled;
+	}
+	public void setNearCacheEnabled(boolean nearCacheEnabled) {
+		this.nearCacheEnabled = nearCacheEnabled;
+	}
+	public int getNearCacheMaxEntries() {
+		return nearCacheMaxEntries;
+	}
+	public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+		this.nearCacheMaxEntries = nearCacheMaxEntries;
+	}
+	public int getNearCacheTtlSeconds() {
+		return nearCacheTtlSeconds;
+	}
+	public void setNearCacheTtlSeconds(int nearCacheTtlSeconds) {
+		this.nearCacheTtlSeconds = nearCacheTtlSeconds;
+	}
+	
+	public boolean isOffHeapCacheEnabled() {
+		return offHeapCacheEnabled;
+	}
+	public void setOffHeapCacheEnabled(boolean offHeapCacheEnabled) {
+		this.offHeapCacheEnabled = offHeapCacheEnabled;
+	}
+	public int getOffHeapCacheSizeMb() {
+		return offHeapCacheSizeMb;
+	}
+	public void setOffHeapCacheSizeMb(int offHeapCacheSizeMb) {
+		this.offHeapCacheSizeMb = offHeapCacheSizeMb;
+	}
+	public int getOffHeapCacheTtlSeconds() {
+		return offHeapCacheTtlSeconds;
+	}
+	public void setOffHeapCacheTtlSeconds(int offHeapCacheTtlSeconds) {
+		this.offHeapCacheTtlSeconds = offHeapCacheTtlSeconds;
+	}
+	
+	public boolean isEnsurePrimaryIndex() {
+		return ensurePrimaryIndex;
+	}
+	public void setEnsurePrimaryIndex(boolean ensurePrimaryIndex) {
+		this.ensurePrimaryIndex = ensurePrimaryIndex;
+	}
+	public List<String> getSecondaryIndexes() {
+		return secondaryIndexes;
+	}
+	public void setSecondaryIndexes(List<String> secondaryIndexes) {
+		this.secondaryIndexes = secondaryIndexes;
+	}
+	
+	
+	public int getPreparedStatementCacheSize() {
+		return preparedStatementCacheSize;
+	}
+	public void setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+		this.preparedStatementCacheSize = preparedStatementCacheSize;
+	}
+	public int getQueryProfileSampleEvery() {
+		return queryProfileSampleEvery;
+	}
+	public void setQueryProfileSampleEvery(int queryProfileSampleEvery) {
+		this.queryProfileSampleEvery = queryProfileSampleEvery;
+	}
+	public int getRuntimeMetricsInterval() {
+		return runtimeMetricsInterval;
+	}
+	public void setRuntimeMetricsInterval(int runtimeMetricsInterval) {
+		this.runtimeMetricsInterval = runtimeMetricsInterval;
+	}
+	public int getNetworkLatencyMetricsInterval() {
+		return networkLatencyMetricsInterval;
+	}
+	public void setNetworkLatencyMetricsInterval(int networkLatencyMetricsInterval) {
+		this.networkLatencyMetricsInterval = networkLatencyMetricsInterval;
+	}
+	public String getEventListenerClass() {
+		return eventListenerClass;
+	}
+	public void setEventListenerClass(String eventListenerClass) {
+		this.eventListenerClass = eventListenerClass;
+	}
+	public long getSlowOperationThreshold() {
+		return slowOperationThreshold;
+	}
+	public void setSlowOperationThreshold(long slowOperationThreshold) {
+		this.slowOperationThreshold = slowOperationThreshold;
+	}
+	public int getSlowOperationLogSize() {
+		return slowOperationLogSize;
+	}
+	public void setSlowOperationLogSize(int slowOperationLogSize) {
+		this.slowOperationLogSize = slowOperationLogSize;
+	}
+	public boolean isLogSlowOperations() {
+		return logSlowOperations;
+	}
+	public void setLogSlowOperations(boolean logSlowOperations) {
+		this.logSlowOperations = logSlowOperations;
+	}
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+	
+	
 	public String getBucketName() {
 		return bucketName;
 	}
@@ -170,25 +553,161 @@ public class CouchbaseConnectorConfig {
 		this.password = password;
 	}
 
-	private CouchbaseClusterClient cbClusterClient = CouchbaseClusterClient.get();
+	private CouchbaseClusterClient cbClusterClient;
+	
+	private String clusterSeedNodes;
+	
+	private DocumentCache documentCache;
+	
+	private OffHeapDocumentCache offHeapDocumentCache;
+	
+	private ConnectorMetrics metrics;
+	
+	private SingleFlight<RawJsonDocument> coalescedGets;
+	
+	private PreparedStatementCache preparedStatementCache;
+	
+	private final CasRetryMetrics casRetryMetrics = new CasRetryMetrics();
 	
 	public Bucket openBucket(){
 		return cbClusterClient.openBucket(getBucketName(), getPassword());
 	}
 	
+	/**
+	 * @return {@link DocumentCache} of the bucket of this config, null if near cache is disabled or not connected.
+	 */
+	public DocumentCache getDocumentCache(){
+		return documentCache;
+	}
+	
+	/**
+	 * @return {@link OffHeapDocumentCache} of the bucket of this config, null if off-heap cache is disabled or not connected.
+	 */
+	public OffHeapDocumentCache getOffHeapDocumentCache(){
+		return offHeapDocumentCache;
+	}
+	
+	/**
+	 * @return {@link SingleFlight} of the bucket of this config sharing in-flight gets of the same id, null if Coalesce Concurrent Gets is disabled or not connected.
+	 */
+	public SingleFlight<RawJsonDocument> getCoalescedGets(){
+		return coalescedGets;
+	}
+	
+	/**
+	 * @return {@link PreparedStatementCache} of plans of queries run as prepared statements on the bucket of this config, null if not connected.
+	 */
+	public PreparedStatementCache getPreparedStatementCache(){
+		return preparedStatementCache;
+	}
+	
+	/**
+	 * @return {@link CasRetryMetrics} of updates retried after a CAS mismatch with this config. Kept across reconnects.
+	 */
+	public CasRetryMetrics getCasRetryMetrics(){
+		return casRetryMetrics;
+	}
+	
+	/**
+	 * @return {@link ConnectorMetrics} of operations run with this config, shared by all configs of the cluster and bucket and kept across reconnects. 
+	 * Null if never connected.
+	 */
+	public ConnectorMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * @return {@link CouchbaseClusterClient} of the cluster this config is connected to, null if not connected.
+	 */
+	public CouchbaseClusterClient getClusterClient() {
+		return cbClusterClient;
+	}
+	
+	/**
+	 * @return caches and counters of this config to expose next to its {@link ConnectorMetrics}, by MBean type.
+	 */
+	Map<String, Object> components(){
+		Map<String, Object> components = new LinkedHashMap<String, Object>();
+		components.put("DocumentCache", documentCache);
+		components.put("OffHeapDocumentCache", offHeapDocumentCache);
+		components.put("CoalescedGets", coalescedGets);
+		components.put("PreparedStatementCache", preparedStatementCache);
+		components.put("CasRetryMetrics", casRetryMetrics);
+		return components;
+	}
+	
 	@Connect
     @TestConnectivity
     public void connect(@ConnectionKey @Default("localhost") String clusterSeedNodes)
         throws ConnectionException {
 		
+		try {
+			validatePerformanceSettings();
+		} catch (IllegalArgumentException e) {
+			throw new ConnectionException(ConnectionExceptionCode.UNKNOWN, "", e.getMessage(), e);
+		}
+		
+		CouchbaseClusterClient client;
+        try {
+        	client = CouchbaseClusterClient.connect(clusterSeedNodes, this);
+		} catch (Exception e) {
+			throw new ConnectionException(ConnectionExceptionCode.CANNOT_REACH,"","Unable to connect to couchbase cluster or open specified bucket");
+		}
         try {
-        	cbClusterClient.createCluster(clusterSeedNodes, this);
         	if(!StringUtils.isEmpty(getBucketName())){
-        		cbClusterClient.openBucket(getBucketName(), getPassword());
+        		Bucket bucket = client.openBucket(getBucketName(), getPassword());
+        		client.ensureIndexes(bucket, isEnsurePrimaryIndex(), getSecondaryIndexes());
         	}
 		} catch (Exception e) {
+			client.disconnect();
 			throw new ConnectionException(ConnectionExceptionCode.CANNOT_REACH,"","Unable to connect to couchbase cluster or open specified bucket");
 		}
+        DocumentCache documentCache = null;
+        OffHeapDocumentCache offHeapDocumentCache = null;
+        SingleFlight<RawJsonDocument> coalescedGets = null;
+        PreparedStatementCache preparedStatementCache;
+        ConnectorMetrics metrics;
+        try {
+        	if(isNearCacheEnabled()){
+        		documentCache = client.getDocumentCache(getBucketName(), getNearCacheMaxEntries(), getNearCacheTtlSeconds());
+        	}
+        	if(isOffHeapCacheEnabled()){
+        		offHeapDocumentCache = client.getOffHeapDocumentCache(getBucketName(), getOffHeapCacheSizeMb(), getOffHeapCacheTtlSeconds());
+        	}
+        	if(isCoalesceGets()){
+        		coalescedGets = client.getCoalescedGets(getBucketName());
+        	}
+        	preparedStatementCache = client.getPreparedStatementCache(getBucketName(), getPreparedStatementCacheSize());
+        	metrics = client.acquireMetrics(getBucketName(), this);
+		} catch (OutOfMemoryError e) {
+			client.disconnect();
+			throw new ConnectionException(ConnectionExceptionCode.UNKNOWN, "", "Unable to allocate " + getOffHeapCacheSizeMb() 
+					+ " MB off-heap cache, lower Memory Cap (MB) or raise -XX:MaxDirectMemorySize", e);
+		} catch (RuntimeException e) {
+			client.disconnect();
+			throw new ConnectionException(ConnectionExceptionCode.UNKNOWN, "", e.getMessage(), e);
+		}
+        this.cbClusterClient = client;
+        this.clusterSeedNodes = clusterSeedNodes;
+        this.documentCache = documentCache;
+        this.offHeapDocumentCache = offHeapDocumentCache;
+        this.coalescedGets = coalescedGets;
+        this.preparedStatementCache = preparedStatementCache;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Creates the event listener of this config, called once per cluster and bucket by {@link CouchbaseClusterClient#acquireMetrics(String, CouchbaseConnectorConfig)}.
+     * @return new instance of Event Listener Class, null if not set.
+     * @throws IllegalArgumentException if the class cannot be instantiated
+     */
+    CouchbaseEventListener createEventListener(){
+    	if(StringUtils.isBlank(getEventListenerClass())) return null;
+    	try {
+    		return (CouchbaseEventListener) ClassUtils.instanciateClass(getEventListenerClass());
+    	} catch (Exception e) {
+    		throw new IllegalArgumentException("Unable to create event listener " + getEventListenerClass(), e);
+    	}
     }
 
     /**
@@ -196,7 +715,15 @@ public class CouchbaseConnectorConfig {
      */
     @Disconnect
     public void disconnect() {
-    	cbClusterClient.disconnectCluster();
+    	if(cbClusterClient != null){
+    		cbClusterClient.releaseMetrics(getBucketName());
+    		cbClusterClient.disconnect();
+    		cbClusterClient = null;
+    		documentCache = null;
+    		offHeapDocumentCache = null;
+    		coalescedGets = null;
+    		preparedStatementCache = null;
+    	}
     }
 
     /**
@@ -204,15 +731,15 @@ public class CouchbaseConnectorConfig {
      */
     @ValidateConnection
     public boolean isConnected() {
-       return cbClusterClient.isConnected();
+       return cbClusterClient != null && cbClusterClient.isConnected();
     }
 
     /**
-     * Are we connected
+     * Identifies the cluster and bucket of this connection
      */
     @ConnectionIdentifier
     public String connectionId() {
-        return "001";
+        return clusterSeedNodes + "/" + getBucketName();
     }
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.config;
+
+/**
+ * Presets for the I/O tuning settings of the Couchbase environment. A setting explicitly configured on 
+ * {@link CouchbaseConnectorConfig} (value greater than 0) always wins over the preset. A preset value of 0 keeps the SDK default.
+ * @author manik
+ *
+ */
+public enum PerformanceProfile {
+	
+	/**
+	 * Couchbase SDK defaults.
+	 */
+	DEFAULT(0, 0, 0, 0, 0, 0, 0),
+	
+	/**
+	 * Fails fast on slow operations, for request/response flows with tight latency budgets.
+	 */
+	LOW_LATENCY(1, 0, 0, 1000, 10000, 0, 1000),
+	
+	/**
+	 * More connections, threads and buffering with lenient timeouts, for batch and ingestion flows.
+	 */
+	HIGH_THROUGHPUT(4, Runtime.getRuntime().availableProcessors() * 2, Runtime.getRuntime().availableProcessors(), 5000, 120000, 65536, 10000);
+	
+	private final int kvEndpoints;
+	private final int ioPoolSize;
+	private final int computationPoolSize;
+	private final long kvTimeout;
+	private final long queryTimeout;
+	private final int requestBufferSize;
+	private final int socketConnectTimeout;
+	
+	private PerformanceProfile(int kvEndpoints, int ioPoolSize, int computationPoolSize, long kvTimeout, long queryTimeout, int requestBufferSize, int socketConnectTimeout) {
+		this.kvEndpoints = kvEndpoints;
+		this.ioPoolSize = ioPoolSize;
+		this.computationPoolSize = computationPoolSize;
+		this.kvTimeout = kvTimeout;
+		this.queryTimeout = queryTimeout;
+		this.requestBufferSize = requestBufferSize;
+		this.socketConnectTimeout = socketConnectTimeout;
+	}
+	
+	public int kvEndpoints(int configured) {
+		return configured > 0 ? configured : kvEndpoints;
+	}
+	
+	public int ioPoolSize(int configured) {
+		return configured > 0 ? configured : ioPoolSize;
+	}
+	
+	public int computationPoolSize(int configured) {
+		return configured > 0 ? configured : computationPoolSize;
+	}
+	
+	public long kvTimeout(long configured) {
+		return configured > 0 ? configured : kvTimeout;
+	}
+	
+	public long queryTimeout(long configured) {
+		return configured > 0 ? configured : queryTimeout;
+	}
+	
+	public int requestBufferSize(int configured) {
+		return configured > 0 ? configured : requestBufferSize;
+	}
+	
+	public int socketConnectTimeout(int configured) {
+		return configured > 0 ? configured : socketConnectTimeout;
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.couchbase.client.java.query.N1qlMetrics;
+
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+
+/**
+ * Metrics of all operations run through the configs of one cluster and bucket, shared by all pooled instances of these configs and kept across reconnects.
+ * Operations are looked up by ordinal, so recording does not allocate. Processors run their body through {@link #time(TimedOperation)}.
+ * Metrics of every operation can be registered as MBeans named org.mule.modules.couchbase:type=OperationMetrics,config=..,bucket=..,operation=..
+ * SDK event bus metrics as org.mule.modules.couchbase:type=SdkEventMetrics,config=..,bucket=.., the slow operation log as
+ * org.mule.modules.couchbase:type=SlowOperationLog,config=..,bucket=.. and query statistics as org.mule.modules.couchbase:type=QueryStatistics,config=..,bucket=..
+ * Caches and counters owned by the config are registered next to them under their own type, e.g. org.mule.modules.couchbase:type=DocumentCache,config=..,bucket=..
+ * @author manik
+ *
+ */
+public class ConnectorMetrics {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(ConnectorMetrics.class);
+	
+	public static final String JMX_DOMAIN = "org.mule.modules.couchbase";
+	
+	private final OperationMetrics[] operations;
+	
+	private final SdkEventMetrics sdkEvents = new SdkEventMetrics();
+	
+	private final SlowOperationLog slowOperations = new SlowOperationLog();
+	
+	private final QueryStatistics queryStatistics = new QueryStatistics();
+	
+	private final List<ObjectName> registered = new ArrayList<ObjectName>();
+	
+	public ConnectorMetrics() {
+		Operation[] values = Operation.values();
+		operations = new OperationMetrics[values.length];
+		for (Operation operation : values) {
+			operations[operation.ordinal()] = new OperationMetrics(operation);
+		}
+	}
+	
+	/**
+	 * Records an operation that started at given {@link System#nanoTime()}.
+	 * @param operation operation that completed
+	 * @param startNanos {@link System#nanoTime()} at the start of the operation
+	 * @param success false if the operation raised an exception
+	 */
+	public void record(Operation operation, long startNanos, boolean success) {
+		record(operation, startNanos, success, null, null, null, 0);
+	}
+	
+	/**
+	 * Records an operation that started at given {@link System#nanoTime()}, and adds it to the {@link SlowOperationLog} if it took longer than its threshold.
+	 * Details are only looked at for slow operations.
+	 * @param operation operation that completed
+	 * @param startNanos {@link System#nanoTime()} at the start of the operation
+	 * @param success false if the operation raised an exception
+	 * @param id document id or query statement, may be null
+	 * @param payload document or content written or read, may be null
+	 * @param queryMetrics metrics returned by the query service, may be null
+	 * @param retries number of times the operation was retried
+	 */
+	public void record(Operation operation, long startNanos, boolean success, String id, Object payload, N1qlMetrics queryMetrics, int retries) {
+		long nanos = System.nanoTime() - startNanos;
+		operations[operation.ordinal()].record(nanos, success);
+		if(nanos >= slowOperations.thresholdNanos){
+			slowOperations.add(operation, nanos, success, id, payload, queryMetrics, retries);
+		}
+	}
+	
+	/**
+	 * Runs the body of a processor and records its latency and outcome, see {@link #record(Operation, long, boolean, String, Object, N1qlMetrics, int)}.
+	 * @param operation body of the processor
+	 * @return result of the body
+	 * @throws E if the body fails, recorded as an error
+	 */
+	public <T, E extends Exception> T time(TimedOperation<T, E> operation) throws E {
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			T result = operation.run();
+			success = true;
+			return result;
+		} finally {
+			record(operation.operation, start, success, operation.id, operation.payload, operation.queryMetrics, operation.retries);
+		}
+	}
+	
+	/**
+	 * Records an operation that runs until given {@link Observable} terminates, such as an asynchronous or streamed operation. It is recorded once: 
+	 * when the observable completes or fails, or as successful when it is unsubscribed before, e.g. by a consumer that stops reading early.
+	 * @param source observable of the operation
+	 * @param operation operation to record
+	 * @param id document id or query statement, may be null
+	 * @param startNanos {@link System#nanoTime()} at the start of the operation
+	 * @return source recording the operation when it terminates
+	 */
+	public <T> Observable<T> time(Observable<T> source, final Operation operation, final String id, final long startNanos) {
+		final AtomicBoolean recorded = new AtomicBoolean();
+		final Action0 completed = new Action0() {
+			@Override
+			public void call() {
+				if (recorded.compareAndSet(false, true)) record(operation, startNanos, true, id, null, null, 0);
+			}
+		};
+		return source.doOnCompleted(completed)
+				.doOnError(new Action1<Throwable>() {
+					@Override
+					public void call(Throwable e) {
+						if (recorded.compareAndSet(false, true)) record(operation, startNanos, false, id, null, null, 0);
+					}
+				})
+				.doOnUnsubscribe(completed);
+	}
+	
+	public OperationMetrics get(Operation operation) {
+		return operations[operation.ordinal()];
+	}
+	
+	/**
+	 * @return {@link SdkEventMetrics} fed by the event bus of the environment of the config.
+	 */
+	public SdkEventMetrics getSdkEvents() {
+		return sdkEvents;
+	}
+	
+	public SlowOperationLog getSlowOperations() {
+		return slowOperations;
+	}
+	
+	/**
+	 * @return {@link QueryStatistics} of N1QL statements executed with this config.
+	 */
+	public QueryStatistics getQueryStatistics() {
+		return queryStatistics;
+	}
+	
+	/**
+	 * @return object name properties identifying the cluster and bucket, shared by all MBeans registered for them.
+	 */
+	String objectNameProperties(String configName, String bucketName) {
+		return "config=" + ObjectName.quote(configName) + ",bucket=" + ObjectName.quote(bucketName);
+	}
+	
+	/**
+	 * Registers metrics of every operation in the platform MBean server. Failures are logged, as metrics must never prevent connecting.
+	 * @param configName name of the cluster, e.g. its seed nodes
+	 * @param bucketName bucket of the config
+	 */
+	public void register(String configName, String bucketName) {
+		register(configName, bucketName, Collections.<String, Object>emptyMap());
+	}
+	
+	/**
+	 * Registers metrics of every operation, and given components of the config, in the platform MBean server. Failures are logged, as metrics must never prevent connecting.
+	 * @param configName name of the cluster, e.g. its seed nodes
+	 * @param bucketName bucket of the config
+	 * @param components MBeans of caches and counters of the config by MBean type, null ones are skipped as disabled
+	 */
+	public synchronized void register(String configName, String bucketName, Map<String, ?> components) {
+		unregister();
+		for (OperationMetrics metrics : operations) {
+			register(metrics, "OperationMetrics", objectNameProperties(configName, bucketName) + ",operation=" + metrics.getOperation().metricName());
+		}
+		register(sdkEvents, "SdkEventMetrics", objectNameProperties(configName, bucketName));
+		register(slowOperations, "SlowOperationLog", objectNameProperties(configName, bucketName));
+		register(queryStatistics, "QueryStatistics", objectNameProperties(configName, bucketName));
+		for (Map.Entry<String, ?> component : components.entrySet()) {
+			if (component.getValue() != null) {
+				register(component.getValue(), component.getKey(), objectNameProperties(configName, bucketName));
+			}
+		}
+	}
+	
+	private void register(Object mbean, String type, String properties) {
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=" + type + "," + properties);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+			registered.add(name);
+		} catch (JMException e) {
+			LOG.warn("Unable to register " + type + " MBean " + properties, e);
+		}
+	}
+	
+	public synchronized void unregister() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				LOG.debug("Unable to unregister metrics MBean " + name, e);
+			}
+		}
+		registered.clear();
+	}
+}
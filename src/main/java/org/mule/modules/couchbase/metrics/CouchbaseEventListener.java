@@ -0,0 +1,23 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import com.couchbase.client.core.event.CouchbaseEvent;
+
+/**
+ * Receives events of the Couchbase SDK event bus, e.g. to forward runtime and network latency metrics to a monitoring system.
+ * Implementations are set by class name on the config and need a public no-argument constructor. Events are delivered on SDK threads,
+ * so implementations must return quickly and must not block.
+ * @author manik
+ *
+ */
+public interface CouchbaseEventListener {
+	
+	/**
+	 * @param configName name of the config that received the event, cluster seed nodes and bucket
+	 * @param event event published by the SDK, {@link CouchbaseEvent#toMap()} gives its content
+	 */
+	void onEvent(String configName, CouchbaseEvent event);
+}
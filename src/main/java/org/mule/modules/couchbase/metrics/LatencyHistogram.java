@@ -0,0 +1,104 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with log-linear buckets: every power of two is split in 8 linear sub-buckets,
+ * so reported percentiles are within 12.5% of recorded values. Recording is a few atomic increments and never allocates.
+ * @author manik
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 3;
+	
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	private final AtomicLong sum = new AtomicLong();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * @param nanos latency to record, negative values are recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+	
+	/**
+	 * @param percentile percentile between 0 and 100
+	 * @return latency in nanoseconds below which given percentile of recorded latencies fall, 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) return 0;
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) return Math.min(upperBoundOf(i), getMax());
+		}
+		return getMax();
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return mean latency in nanoseconds.
+	 */
+	public long getMean() {
+		long recorded = count.get();
+		return recorded == 0 ? 0 : sum.get() / recorded;
+	}
+	
+	/**
+	 * @return highest latency in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+/**
+ * Operations of the connector for which metrics are recorded.
+ * Asynchronous and streamed operations are recorded once their result is complete, not when the processor returns.
+ * @author manik
+ *
+ */
+public enum Operation {
+	GET,
+	GET_BULK,
+	UPSERT,
+	INSERT,
+	UPDATE,
+	WRITE_BULK,
+	GET_RAW,
+	WRITE_RAW,
+	LOOKUP_IN,
+	MUTATE_IN,
+	COUNTER,
+	APPEND,
+	PREPEND,
+	DELETE,
+	UNLOCK,
+	QUERY,
+	QUERY_STREAMING,
+	GET_ASYNC,
+	WRITE_ASYNC,
+	DELETE_ASYNC,
+	QUERY_ASYNC;
+	
+	/**
+	 * @return name used in JMX object names, e.g. get_bulk.
+	 */
+	public String metricName() {
+		return name().toLowerCase();
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count, errors and latency histogram of one operation.
+ * @author manik
+ *
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+	
+	private final Operation operation;
+	
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	
+	private final AtomicLong errors = new AtomicLong();
+	
+	public OperationMetrics(Operation operation) {
+		this.operation = operation;
+	}
+	
+	/**
+	 * @param nanos latency of the operation
+	 * @param success false if the operation raised an exception
+	 */
+	public void record(long nanos, boolean success) {
+		latencies.record(nanos);
+		if (!success) errors.incrementAndGet();
+	}
+	
+	public Operation getOperation() {
+		return operation;
+	}
+	
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	@Override
+	public long getCount() {
+		return latencies.getCount();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public long getMeanMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(latencies.getMean());
+	}
+
+	@Override
+	public long getP50Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(50));
+	}
+
+	@Override
+	public long getP99Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(99));
+	}
+
+	@Override
+	public long getP999Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(99.9));
+	}
+
+	@Override
+	public long getMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(latencies.getMax());
+	}
+
+	@Override
+	public void reset() {
+		latencies.reset();
+		errors.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return operation.metricName() + " Count: " + getCount() + ", Errors: " + getErrors() + ", p50: " + getP50Micros() + "us, p99: " + getP99Micros() + "us, p99.9: " + getP999Micros() + "us, Max: " + getMaxMicros() + "us";
+	}
+}
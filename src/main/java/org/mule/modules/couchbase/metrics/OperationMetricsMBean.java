@@ -0,0 +1,29 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+/**
+ * JMX view of the metrics of one operation. Latencies are in microseconds.
+ * @author manik
+ *
+ */
+public interface OperationMetricsMBean {
+	
+	long getCount();
+	
+	long getErrors();
+	
+	long getMeanMicros();
+	
+	long getP50Micros();
+	
+	long getP99Micros();
+	
+	long getP999Micros();
+	
+	long getMaxMicros();
+	
+	void reset();
+}
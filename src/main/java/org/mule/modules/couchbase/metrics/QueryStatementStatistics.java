@@ -0,0 +1,130 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Totals of the query service metrics of all executions of one statement fingerprint.
+ * @author manik
+ *
+ */
+public class QueryStatementStatistics {
+	
+	private final String fingerprint;
+	
+	private final AtomicLong executions = new AtomicLong();
+	
+	private final AtomicLong errors = new AtomicLong();
+	
+	private final AtomicLong elapsedNanos = new AtomicLong();
+	
+	private final AtomicLong executionNanos = new AtomicLong();
+	
+	private final AtomicLong maxExecutionNanos = new AtomicLong();
+	
+	private final AtomicLong resultCount = new AtomicLong();
+	
+	private final AtomicLong resultSize = new AtomicLong();
+	
+	private final AtomicLong mutationCount = new AtomicLong();
+	
+	private final AtomicLong sampled = new AtomicLong();
+	
+	private volatile String profile;
+	
+	public QueryStatementStatistics(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+	
+	/**
+	 * @return number of executions including this one.
+	 */
+	long record(long elapsed, long execution, long results, long size, long mutations, boolean success) {
+		if(!success) errors.incrementAndGet();
+		elapsedNanos.addAndGet(elapsed);
+		executionNanos.addAndGet(execution);
+		resultCount.addAndGet(results);
+		resultSize.addAndGet(size);
+		mutationCount.addAndGet(mutations);
+		long max;
+		while(execution > (max = maxExecutionNanos.get()) && !maxExecutionNanos.compareAndSet(max, execution));
+		return executions.incrementAndGet();
+	}
+	
+	/**
+	 * @return statement with literals replaced by ?, shared by all statements aggregated here.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	
+	public long getExecutions() {
+		return executions.get();
+	}
+	
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	/**
+	 * @return total elapsed time reported by the query service, including queueing and streaming of results.
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos.get());
+	}
+	
+	/**
+	 * @return total execution time reported by the query service.
+	 */
+	public long getExecutionMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(executionNanos.get());
+	}
+	
+	public long getMaxExecutionMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxExecutionNanos.get());
+	}
+	
+	public long getResultCount() {
+		return resultCount.get();
+	}
+	
+	public long getResultSize() {
+		return resultSize.get();
+	}
+	
+	public long getMutationCount() {
+		return mutationCount.get();
+	}
+	
+	/**
+	 * Counts an execution about to run, separately from the executions recorded once completed.
+	 * @param every sampling interval, at least 1
+	 * @return true for the first and then every Nth execution.
+	 */
+	boolean sample(int every) {
+		return sampled.getAndIncrement() % every == 0;
+	}
+	
+	/**
+	 * @return profile with the plan and timings of every operator returned by the query service for the latest sampled execution, null if never sampled.
+	 */
+	public String getProfile() {
+		return profile;
+	}
+	
+	public void setProfile(String profile) {
+		this.profile = profile;
+	}
+	
+	@Override
+	public String toString() {
+		long count = getExecutions();
+		return fingerprint + " Executions: " + count + ", Errors: " + getErrors() + ", Execution: " + getExecutionMillis() + "ms" 
+				+ (count > 0 ? " (mean " + getExecutionMillis() / count + "ms, max " + getMaxExecutionMillis() + "ms)" : "") 
+				+ ", Elapsed: " + getElapsedMillis() + "ms, Results: " + getResultCount() + " (" + getResultSize() + " bytes), Mutations: " + getMutationCount();
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.couchbase.client.java.query.N1qlMetrics;
+
+/**
+ * Query service metrics ({@link N1qlMetrics}) aggregated per statement fingerprint, to find the statements that dominate query service time.
+ * The fingerprint of a statement is its text with string and number literals replaced by ?, so statements differing only by inlined values 
+ * are aggregated together. At most {@link #MAX_STATEMENTS} fingerprints are tracked, executions of further statements are only counted as untracked.
+ * @author manik
+ *
+ */
+public class QueryStatistics implements QueryStatisticsMBean {
+	
+	public static final int MAX_STATEMENTS = 1000;
+	
+	private static final int TOP_STATEMENTS = 10;
+	
+	private static final String UNTRACKED = "(untracked statements)";
+	
+	private static final Pattern LITERALS = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'|\"(?:[^\"\\\\]|\\\\.)*\"|(?<![\\w`$])\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+	
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	
+	private static final Pattern DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ns|us|\\u00b5s|\\u03bcs|ms|s|m|h)");
+	
+	private final ConcurrentMap<String, QueryStatementStatistics> statements = new ConcurrentHashMap<String, QueryStatementStatistics>();
+	
+	private volatile QueryStatementStatistics untracked = new QueryStatementStatistics(UNTRACKED);
+	
+	/**
+	 * Records one execution of given statement.
+	 * @param statement N1QL statement as executed
+	 * @param metrics metrics returned by the query service, null if the query did not complete
+	 * @param success false if the query failed
+	 * @return statistics of the statement fingerprint, with this execution counted
+	 */
+	public QueryStatementStatistics record(String statement, N1qlMetrics metrics, boolean success) {
+		QueryStatementStatistics statistics = statistics(fingerprint(statement));
+		if(metrics == null){
+			statistics.record(0, 0, 0, 0, 0, success);
+		} else {
+			statistics.record(parseDuration(metrics.elapsedTime()), parseDuration(metrics.executionTime()), metrics.resultCount(), 
+					metrics.resultSize(), metrics.mutationCount(), success);
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Tells whether an execution of given statement about to run is to be profiled: the first and then every Nth execution of its fingerprint.
+	 * @param statement N1QL statement to be executed
+	 * @param every sampling interval, 0 to never profile
+	 * @return true to request the profile of this execution
+	 */
+	public boolean sample(String statement, int every) {
+		return every > 0 && statistics(fingerprint(statement)).sample(every);
+	}
+	
+	private QueryStatementStatistics statistics(String fingerprint) {
+		QueryStatementStatistics statistics = statements.get(fingerprint);
+		if(statistics != null) return statistics;
+		if(statements.size() >= MAX_STATEMENTS) return untracked;
+		statistics = new QueryStatementStatistics(fingerprint);
+		QueryStatementStatistics existing = statements.putIfAbsent(fingerprint, statistics);
+		return existing != null ? existing : statistics;
+	}
+	
+	/**
+	 * @param statement N1QL statement
+	 * @return statement with string and number literals replaced by ? and whitespace collapsed.
+	 */
+	public static String fingerprint(String statement) {
+		if(statement == null) return "";
+		Matcher literals = LITERALS.matcher(statement);
+		return WHITESPACE.matcher(literals.replaceAll("?")).replaceAll(" ").trim();
+	}
+	
+	/**
+	 * Parses durations as reported by the query service, e.g. 1.5ms or 1m2.5s.
+	 * @param duration duration text
+	 * @return duration in nanoseconds, 0 if it cannot be parsed.
+	 */
+	static long parseDuration(String duration) {
+		if(duration == null) return 0;
+		Matcher parts = DURATION.matcher(duration);
+		double nanos = 0;
+		while(parts.find()){
+			double value = Double.parseDouble(parts.group(1));
+			String unit = parts.group(2);
+			if("ns".equals(unit)) nanos += value;
+			else if("ms".equals(unit)) nanos += value * TimeUnit.MILLISECONDS.toNanos(1);
+			else if("s".equals(unit)) nanos += value * TimeUnit.SECONDS.toNanos(1);
+			else if("m".equals(unit)) nanos += value * TimeUnit.MINUTES.toNanos(1);
+			else if("h".equals(unit)) nanos += value * TimeUnit.HOURS.toNanos(1);
+			else nanos += value * TimeUnit.MICROSECONDS.toNanos(1);
+		}
+		return (long) nanos;
+	}
+	
+	/**
+	 * @param statement N1QL statement
+	 * @return statistics of the fingerprint of given statement, null if it was never executed.
+	 */
+	public QueryStatementStatistics get(String statement) {
+		return statements.get(fingerprint(statement));
+	}
+	
+	/**
+	 * @return statistics of all tracked statements, highest total execution time first.
+	 */
+	public List<QueryStatementStatistics> getStatements() {
+		List<QueryStatementStatistics> result = new ArrayList<QueryStatementStatistics>(statements.values());
+		QueryStatementStatistics others = untracked;
+		if(others.getExecutions() > 0) result.add(others);
+		Collections.sort(result, new Comparator<QueryStatementStatistics>() {
+			@Override
+			public int compare(QueryStatementStatistics first, QueryStatementStatistics second) {
+				long difference = second.getExecutionMillis() - first.getExecutionMillis();
+				return difference == 0 ? 0 : difference > 0 ? 1 : -1;
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public int getStatementCount() {
+		return statements.size();
+	}
+
+	@Override
+	public String[] getTopStatementsByExecutionTime() {
+		List<QueryStatementStatistics> sorted = getStatements();
+		String[] result = new String[Math.min(TOP_STATEMENTS, sorted.size())];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = sorted.get(i).toString();
+		}
+		return result;
+	}
+
+	@Override
+	public String[] getSampledProfiles() {
+		List<String> profiles = new ArrayList<String>();
+		for (QueryStatementStatistics statistics : getStatements()) {
+			if(statistics.getProfile() != null) profiles.add(statistics.getFingerprint() + " Profile: " + statistics.getProfile());
+		}
+		return profiles.toArray(new String[profiles.size()]);
+	}
+
+	@Override
+	public void reset() {
+		statements.clear();
+		untracked = new QueryStatementStatistics(UNTRACKED);
+	}
+}
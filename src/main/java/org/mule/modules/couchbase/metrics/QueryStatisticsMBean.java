@@ -0,0 +1,30 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+/**
+ * JMX view of the {@link QueryStatistics} of one connector config.
+ * @author manik
+ *
+ */
+public interface QueryStatisticsMBean {
+	
+	/**
+	 * @return number of distinct statement fingerprints tracked.
+	 */
+	int getStatementCount();
+	
+	/**
+	 * @return statements with the highest total execution time on the query service, highest first.
+	 */
+	String[] getTopStatementsByExecutionTime();
+	
+	/**
+	 * @return latest sampled profile, with plan and operator timings, of every statement that has one.
+	 */
+	String[] getSampledProfiles();
+	
+	void reset();
+}
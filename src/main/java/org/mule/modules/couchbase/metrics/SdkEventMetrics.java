@@ -0,0 +1,136 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.couchbase.client.core.event.CouchbaseEvent;
+import com.couchbase.client.core.event.EventBus;
+import com.couchbase.client.core.event.metrics.NetworkLatencyMetricsEvent;
+import com.couchbase.client.core.event.metrics.RuntimeMetricsEvent;
+import com.couchbase.client.core.event.system.ConfigUpdatedEvent;
+import com.couchbase.client.core.event.system.NodeConnectedEvent;
+import com.couchbase.client.core.event.system.NodeDisconnectedEvent;
+
+import rx.Subscription;
+import rx.functions.Action1;
+
+/**
+ * Subscribes a config to the event bus of its Couchbase environment. Keeps the latest runtime and network latency metrics for JMX,
+ * counts node and configuration events, and forwards every event to an optional {@link CouchbaseEventListener} tagged with the config name.
+ * @author manik
+ *
+ */
+public class SdkEventMetrics implements SdkEventMetricsMBean {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(SdkEventMetrics.class);
+	
+	private volatile Map<String, Object> runtimeMetrics;
+	
+	private volatile Map<String, Object> networkLatencyMetrics;
+	
+	private final AtomicLong metricEvents = new AtomicLong();
+	
+	private final AtomicLong nodeConnectedEvents = new AtomicLong();
+	
+	private final AtomicLong nodeDisconnectedEvents = new AtomicLong();
+	
+	private final AtomicLong configUpdatedEvents = new AtomicLong();
+	
+	private Subscription subscription;
+	
+	/**
+	 * @param eventBus {@link EventBus} of the environment of the config
+	 * @param configName name used to tag events forwarded to listener
+	 * @param listener {@link CouchbaseEventListener} to forward events to, may be null
+	 */
+	public synchronized void subscribe(EventBus eventBus, final String configName, final CouchbaseEventListener listener) {
+		unsubscribe();
+		subscription = eventBus.get().subscribe(new Action1<CouchbaseEvent>() {
+			@Override
+			public void call(CouchbaseEvent event) {
+				onEvent(event);
+				if (listener != null) {
+					try {
+						listener.onEvent(configName, event);
+					} catch (RuntimeException e) {
+						LOG.warn("Couchbase event listener failed on event " + event.getClass().getSimpleName(), e);
+					}
+				}
+			}
+		});
+	}
+	
+	public synchronized void unsubscribe() {
+		if (subscription != null) {
+			subscription.unsubscribe();
+			subscription = null;
+		}
+	}
+	
+	void onEvent(CouchbaseEvent event) {
+		if (event instanceof RuntimeMetricsEvent) {
+			metricEvents.incrementAndGet();
+			runtimeMetrics = event.toMap();
+		} else if (event instanceof NetworkLatencyMetricsEvent) {
+			metricEvents.incrementAndGet();
+			networkLatencyMetrics = event.toMap();
+		} else if (event instanceof NodeConnectedEvent) {
+			nodeConnectedEvents.incrementAndGet();
+		} else if (event instanceof NodeDisconnectedEvent) {
+			nodeDisconnectedEvents.incrementAndGet();
+		} else if (event instanceof ConfigUpdatedEvent) {
+			configUpdatedEvents.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return content of the latest runtime metrics event, null if none was published yet.
+	 */
+	public Map<String, Object> getRuntimeMetricsMap() {
+		return runtimeMetrics;
+	}
+	
+	/**
+	 * @return content of the latest network latency metrics event, null if none was published yet.
+	 */
+	public Map<String, Object> getNetworkLatencyMetricsMap() {
+		return networkLatencyMetrics;
+	}
+
+	@Override
+	public String getRuntimeMetrics() {
+		return String.valueOf(runtimeMetrics);
+	}
+
+	@Override
+	public String getNetworkLatencyMetrics() {
+		return String.valueOf(networkLatencyMetrics);
+	}
+
+	@Override
+	public long getMetricEvents() {
+		return metricEvents.get();
+	}
+
+	@Override
+	public long getNodeConnectedEvents() {
+		return nodeConnectedEvents.get();
+	}
+
+	@Override
+	public long getNodeDisconnectedEvents() {
+		return nodeDisconnectedEvents.get();
+	}
+
+	@Override
+	public long getConfigUpdatedEvents() {
+		return configUpdatedEvents.get();
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+/**
+ * JMX view of the latest metrics published on the SDK event bus, and of counts of node and configuration events.
+ * @author manik
+ *
+ */
+public interface SdkEventMetricsMBean {
+	
+	/**
+	 * @return latest runtime metrics event, e.g. heap, GC and thread counts of the SDK, as text.
+	 */
+	String getRuntimeMetrics();
+	
+	/**
+	 * @return latest network latency metrics event, with latency percentiles per node, service and request type, as text.
+	 */
+	String getNetworkLatencyMetrics();
+	
+	long getMetricEvents();
+	
+	long getNodeConnectedEvents();
+	
+	long getNodeDisconnectedEvents();
+	
+	long getConfigUpdatedEvents();
+}
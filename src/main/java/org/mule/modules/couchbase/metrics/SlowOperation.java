@@ -0,0 +1,105 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry of the {@link SlowOperationLog}, describing one operation that took longer than the slow operation threshold.
+ * @author manik
+ *
+ */
+public class SlowOperation {
+	
+	private final long timestamp;
+	
+	private final Operation operation;
+	
+	private final String bucket;
+	
+	private final String key;
+	
+	private final long latencyNanos;
+	
+	private final boolean success;
+	
+	private final long payloadBytes;
+	
+	private final String serverDuration;
+	
+	private final int retries;
+	
+	public SlowOperation(long timestamp, Operation operation, String bucket, String key, long latencyNanos, boolean success, long payloadBytes, String serverDuration, int retries) {
+		this.timestamp = timestamp;
+		this.operation = operation;
+		this.bucket = bucket;
+		this.key = key;
+		this.latencyNanos = latencyNanos;
+		this.success = success;
+		this.payloadBytes = payloadBytes;
+		this.serverDuration = serverDuration;
+		this.retries = retries;
+	}
+
+	/**
+	 * @return time the operation completed, in milliseconds since epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public String getBucket() {
+		return bucket;
+	}
+
+	/**
+	 * @return document id, or hash of the statement for queries. Null if unknown.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	public long getLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return size of the document written or read, or of the query results. -1 if unknown.
+	 */
+	public long getPayloadBytes() {
+		return payloadBytes;
+	}
+
+	/**
+	 * @return execution time reported by the query service, e.g. 712.5ms. Null for key-value operations.
+	 */
+	public String getServerDuration() {
+		return serverDuration;
+	}
+
+	/**
+	 * @return number of times the operation was retried, e.g. after a CAS mismatch.
+	 */
+	public int getRetries() {
+		return retries;
+	}
+	
+	@Override
+	public String toString() {
+		return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(timestamp)) + " operation=" + operation.metricName() + " bucket=" + bucket 
+				+ " key=" + key + " latencyMs=" + getLatencyMillis() + " success=" + success + " payloadBytes=" + payloadBytes 
+				+ " serverDuration=" + serverDuration + " retries=" + retries;
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.couchbase.client.java.document.Document;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.N1qlMetrics;
+
+/**
+ * Bounded ring buffer of the most recent operations that took longer than a threshold. Operations under the threshold only cost
+ * a comparison in {@link ConnectorMetrics#record(Operation, long, boolean, String, Object, N1qlMetrics, int)}, payload sizes are 
+ * computed only for slow operations. Query statements are recorded by hash, so their parameters and text never reach the log.
+ * @author manik
+ *
+ */
+public class SlowOperationLog implements SlowOperationLogMBean {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(SlowOperationLog.class);
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	static final int DEFAULT_CAPACITY = 100;
+	
+	volatile long thresholdNanos = Long.MAX_VALUE;
+	
+	private volatile AtomicReferenceArray<SlowOperation> entries = new AtomicReferenceArray<SlowOperation>(DEFAULT_CAPACITY);
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	private volatile String bucket;
+	
+	private volatile boolean logEnabled;
+	
+	/**
+	 * @param bucket bucket of the config, recorded with every entry
+	 * @param thresholdMillis latency above which operations are recorded, 0 to disable
+	 * @param capacity maximum number of entries kept. The log is cleared if the capacity changes.
+	 * @param logEnabled also log slow operations as warnings
+	 */
+	public void configure(String bucket, long thresholdMillis, int capacity, boolean logEnabled) {
+		this.bucket = bucket;
+		this.logEnabled = logEnabled;
+		if(capacity != entries.length()){
+			entries = new AtomicReferenceArray<SlowOperation>(Math.max(1, capacity));
+			count.set(0);
+		}
+		this.thresholdNanos = thresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : Long.MAX_VALUE;
+	}
+	
+	void add(Operation operation, long latencyNanos, boolean success, String id, Object payload, N1qlMetrics queryMetrics, int retries) {
+		long payloadBytes = -1;
+		try {
+			payloadBytes = queryMetrics != null ? queryMetrics.resultSize() : payloadBytes(payload);
+		} catch (RuntimeException e) {
+			LOG.debug("Unable to compute payload size of slow operation", e);
+		}
+		String key = isQuery(operation) && id != null ? "statement#" + Integer.toHexString(id.hashCode()) : id;
+		SlowOperation entry = new SlowOperation(System.currentTimeMillis(), operation, bucket, key, latencyNanos, success, payloadBytes, 
+				queryMetrics == null ? null : queryMetrics.executionTime(), retries);
+		AtomicReferenceArray<SlowOperation> buffer = entries;
+		buffer.set((int) (count.getAndIncrement() % buffer.length()), entry);
+		if(logEnabled){
+			LOG.warn("Slow Couchbase operation: {}", entry);
+		}
+	}
+	
+	private static boolean isQuery(Operation operation) {
+		return operation == Operation.QUERY || operation == Operation.QUERY_STREAMING;
+	}
+	
+	/**
+	 * @return UTF-8 size of the JSON of given document, content or raw value, -1 if unknown.
+	 */
+	static long payloadBytes(Object payload) {
+		if(payload == null || payload instanceof InputStream) return -1;
+		if(payload instanceof byte[]) return ((byte[]) payload).length;
+		if(payload instanceof Document) return payloadBytes(((Document<?>) payload).content());
+		if(payload instanceof JavaMapDocument) return payloadBytes(((JavaMapDocument) payload).getContent());
+		if(payload instanceof Map) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (Map<String, Object>) payload;
+			return payloadBytes(JsonObject.from(map));
+		}
+		if(payload instanceof List) return payloadBytes(JsonArray.from((List<?>) payload));
+		return payload.toString().getBytes(UTF_8).length;
+	}
+	
+	/**
+	 * @return slow operations still in the log, most recent first.
+	 */
+	public List<SlowOperation> getSlowOperations() {
+		AtomicReferenceArray<SlowOperation> buffer = entries;
+		long last = count.get();
+		List<SlowOperation> result = new ArrayList<SlowOperation>();
+		for (long index = last - 1; index >= 0 && index >= last - buffer.length(); index--) {
+			SlowOperation entry = buffer.get((int) (index % buffer.length()));
+			if(entry != null) result.add(entry);
+		}
+		return result;
+	}
+
+	@Override
+	public long getThresholdMillis() {
+		long threshold = thresholdNanos;
+		return threshold == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(threshold);
+	}
+
+	@Override
+	public int getCapacity() {
+		return entries.length();
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public String[] getEntries() {
+		List<SlowOperation> slowOperations = getSlowOperations();
+		String[] result = new String[slowOperations.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = slowOperations.get(i).toString();
+		}
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		entries = new AtomicReferenceArray<SlowOperation>(entries.length());
+		count.set(0);
+	}
+}
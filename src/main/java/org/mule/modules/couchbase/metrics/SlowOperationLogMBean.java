@@ -0,0 +1,32 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+/**
+ * JMX view of the {@link SlowOperationLog} of one connector config.
+ * @author manik
+ *
+ */
+public interface SlowOperationLogMBean {
+	
+	/**
+	 * @return latency above which operations are logged, 0 if disabled.
+	 */
+	long getThresholdMillis();
+	
+	int getCapacity();
+	
+	/**
+	 * @return slow operations recorded since start or last clear, including the ones no longer in the log.
+	 */
+	long getCount();
+	
+	/**
+	 * @return slow operations still in the log, most recent first.
+	 */
+	String[] getEntries();
+	
+	void clear();
+}
@@ -0,0 +1,69 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.metrics;
+
+import com.couchbase.client.java.query.N1qlMetrics;
+
+/**
+ * Body of a processor, run by {@link ConnectorMetrics#time(TimedOperation)} which records its latency and outcome.
+ * Details only looked at by the {@link SlowOperationLog}, such as the document read or the number of retries, can be set while the body runs.
+ * @author manik
+ *
+ * @param <T> type of the result
+ * @param <E> type of checked exception raised by the body, {@link RuntimeException} if none
+ */
+public abstract class TimedOperation<T, E extends Exception> {
+
+	final Operation operation;
+
+	final String id;
+
+	Object payload;
+
+	N1qlMetrics queryMetrics;
+
+	int retries;
+
+	/**
+	 * @param operation operation to record the body as
+	 * @param id document id or query statement, may be null
+	 * @param payload document or content written, may be null
+	 */
+	protected TimedOperation(Operation operation, String id, Object payload) {
+		this.operation = operation;
+		this.id = id;
+		this.payload = payload;
+	}
+
+	/**
+	 * @return result of the processor
+	 * @throws E if the processor fails
+	 */
+	protected abstract T run() throws E;
+
+	/**
+	 * Sets the document or content read by the body.
+	 * @param payload document or content read
+	 * @return given payload
+	 */
+	protected <P> P payload(P payload) {
+		this.payload = payload;
+		return payload;
+	}
+
+	/**
+	 * @param queryMetrics metrics returned by the query service
+	 */
+	protected void queryMetrics(N1qlMetrics queryMetrics) {
+		this.queryMetrics = queryMetrics;
+	}
+
+	/**
+	 * @param retries number of times the operation was retried so far
+	 */
+	protected void retries(int retries) {
+		this.retries = retries;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a bulk document fetch. Found documents are keyed by their id in the order they were requested,
+ * ids that do not exist in the bucket are reported in {@link #getMissingIds()}.
+ * @author manik
+ *
+ */
+public class BulkGetResult {
+
+	private Map<String, JavaMapDocument> documents = new LinkedHashMap<String, JavaMapDocument>();
+
+	private List<String> missingIds = new ArrayList<String>();
+
+	public Map<String, JavaMapDocument> getDocuments() {
+		return documents;
+	}
+
+	public void setDocuments(Map<String, JavaMapDocument> documents) {
+		this.documents = documents;
+	}
+
+	public List<String> getMissingIds() {
+		return missingIds;
+	}
+
+	public void setMissingIds(List<String> missingIds) {
+		this.missingIds = missingIds;
+	}
+
+	/**
+	 * Found documents as a {@link List}, in the order they were requested.
+	 * @return {@link List} of {@link JavaMapDocument}
+	 */
+	public List<JavaMapDocument> getDocumentList() {
+		return new ArrayList<JavaMapDocument>(documents.values());
+	}
+
+	@Override
+	public String toString() {
+		return "Documents: " + documents.keySet() + ", Missing: " + missingIds;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a bulk write. Contains one {@link DocumentWriteOutcome} per submitted document, in submission order.
+ * @author manik
+ *
+ */
+public class BulkWriteResult {
+
+	private List<DocumentWriteOutcome> outcomes = new ArrayList<DocumentWriteOutcome>();
+
+	public List<DocumentWriteOutcome> getOutcomes() {
+		return outcomes;
+	}
+
+	public void setOutcomes(List<DocumentWriteOutcome> outcomes) {
+		this.outcomes = outcomes;
+	}
+	
+	/**
+	 * @return {@link List} of outcomes for documents that could not be written.
+	 */
+	public List<DocumentWriteOutcome> getFailures() {
+		List<DocumentWriteOutcome> failures = new ArrayList<DocumentWriteOutcome>();
+		for (DocumentWriteOutcome outcome : outcomes) {
+			if (!outcome.isSuccess()) failures.add(outcome);
+		}
+		return failures;
+	}
+	
+	public int getSuccessCount() {
+		return outcomes.size() - getFailures().size();
+	}
+	
+	public boolean isAllSuccessful() {
+		return getFailures().isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Outcomes: " + outcomes;
+	}
+}
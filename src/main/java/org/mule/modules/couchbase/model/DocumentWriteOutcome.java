@@ -0,0 +1,73 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+/**
+ * Outcome of writing a single document as part of a bulk write. Either carries the new CAS of the document or the exception raised by the server.
+ * @author manik
+ *
+ */
+public class DocumentWriteOutcome {
+
+	private final int index;
+	
+	private final String id;
+	
+	private final long cas;
+	
+	private final Throwable exception;
+	
+	private DocumentWriteOutcome(int index, String id, long cas, Throwable exception) {
+		this.index = index;
+		this.id = id;
+		this.cas = cas;
+		this.exception = exception;
+	}
+	
+	public static DocumentWriteOutcome success(int index, String id, long cas) {
+		return new DocumentWriteOutcome(index, id, cas, null);
+	}
+	
+	public static DocumentWriteOutcome failure(int index, String id, Throwable exception) {
+		return new DocumentWriteOutcome(index, id, 0, exception);
+	}
+
+	/**
+	 * Position of the document in the submitted list.
+	 * @return index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * New CAS of the document, 0 if the write failed.
+	 * @return cas
+	 */
+	public long getCas() {
+		return cas;
+	}
+
+	/**
+	 * Exception raised while writing this document, null if the write succeeded.
+	 * @return {@link Throwable}
+	 */
+	public Throwable getException() {
+		return exception;
+	}
+	
+	public boolean isSuccess() {
+		return exception == null;
+	}
+
+	@Override
+	public String toString() {
+		return "Id: " + id + (isSuccess() ? ", CAS: " + cas : ", Error: " + exception);
+	}
+}
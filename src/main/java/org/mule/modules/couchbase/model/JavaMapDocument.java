@@ -4,7 +4,9 @@
  */
 package org.mule.modules.couchbase.model;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.mule.api.annotations.Required;
@@ -94,22 +96,44 @@ public class JavaMapDocument implements Cloneable {
 	}
 	
 	/**
-	 * Creates an instance of {@link JavaMapDocument} from {@link JsonDocument}.
+	 * Reads a single top level field of the content. For documents read from database this does not convert the whole content to {@link Map}.
+	 * @param name field name
+	 * @return field value, nested objects and arrays as {@link Map} and {@link java.util.List}. Null if field or content does not exist.
+	 */
+	public Object getField(String name) {
+		Map<String, Object> content = getContent();
+		return content == null ? null : content.get(name);
+	}
+	
+	/**
+	 * Creates an instance of {@link JavaMapDocument} from {@link JsonDocument}. Content is converted to {@link Map} when first accessed.
 	 * @param jsonDocument
 	 * @return {@link JavaMapDocument}
 	 */
 	public static JavaMapDocument fromJsonDocument(JsonDocument jsonDocument){
+		if(jsonDocument.content() != null) {
+			return new LazyJavaMapDocument(jsonDocument.id(), jsonDocument.cas(), jsonDocument.expiry(), jsonDocument.content(), null);
+		}
 		JavaMapDocument javaMapDocument = new JavaMapDocument();
 		javaMapDocument.setCas(jsonDocument.cas());
 		javaMapDocument.setExpiry(jsonDocument.expiry());
 		javaMapDocument.setId(jsonDocument.id());
-		if(jsonDocument.content() != null) {
-			javaMapDocument.setContent(jsonDocument.content().toMap());
-		}
 		
 		return javaMapDocument;
 	}
 	
+	/**
+	 * Creates an instance of {@link JavaMapDocument} from raw JSON content. JSON is parsed when content is first accessed.
+	 * @param id document id
+	 * @param cas document CAS
+	 * @param expiry document expiry
+	 * @param json raw JSON object
+	 * @return {@link JavaMapDocument}
+	 */
+	public static JavaMapDocument fromRawJson(String id, long cas, int expiry, String json){
+		return new LazyJavaMapDocument(id, cas, expiry, null, json);
+	}
+	
 	/**
 	 * Creates {@link JsonDocument} from this {@link JavaMapDocument}. 
 	 * @return {@link JsonDocument}
@@ -131,26 +155,58 @@ public class JavaMapDocument implements Cloneable {
 	
 	@Override
 	public String toString() {
-		return "Id: " + this.id + ", CAS: "+ this.cas + ", Expiry: " + this.expiry + ", Content: " + this.content.toString();
+		return "Id: " + this.id + ", CAS: "+ this.cas + ", Expiry: " + this.expiry + ", Content: " + getContent();
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public JavaMapDocument clone() {
+		return copy();
+	}
+	
+	/**
+	 * Copies this document. Nested maps and lists of content are copied so that changes to the copy never reach this document,
+	 * other values are immutable JSON values and are shared.
+	 * @return copy of this document
+	 */
+	protected JavaMapDocument copy() {
 		JavaMapDocument newDoc = new JavaMapDocument();
 		newDoc.setId(this.getId());
 		newDoc.setCas(this.getCas());
 		newDoc.setExpiry(getExpiry());
-		newDoc.setContent((Map<String, Object>) ((HashMap<String, Object>)getContent()).clone());
+		Map<String, Object> content = getContent();
+		if(content != null) newDoc.setContent(copyMap(content));
 		return newDoc;
 	}
+	
+	private static Map<String, Object> copyMap(Map<String, Object> map) {
+		Map<String, Object> copy = new LinkedHashMap<String, Object>(Math.max(16, (int) (map.size() / 0.75f) + 1));
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			copy.put(entry.getKey(), copyValue(entry.getValue()));
+		}
+		return copy;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Object copyValue(Object value) {
+		if (value instanceof Map) return copyMap((Map<String, Object>) value);
+		if (value instanceof List) {
+			List<Object> list = (List<Object>) value;
+			List<Object> copy = new ArrayList<Object>(list.size());
+			for (Object item : list) {
+				copy.add(copyValue(item));
+			}
+			return copy;
+		}
+		return value;
+	}
 
 	/**
-	 * Checks if Content is null or empty.
-	 * @return
+	 * Checks if document has content that is not empty.
+	 * @return true if content is neither null nor empty.
 	 */
 	public boolean hasContent(){
-		return content == null || content.isEmpty();
+		Map<String, Object> content = getContent();
+		return content != null && !content.isEmpty();
 	}
 	
 }
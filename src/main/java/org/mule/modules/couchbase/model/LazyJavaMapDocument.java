@@ -0,0 +1,82 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+import java.util.Map;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+
+/**
+ * {@link JavaMapDocument} read from database that keeps the {@link JsonObject} or raw JSON it was created from, and converts it 
+ * to content {@link Map} only when {@link #getContent()} is first called. {@link #getField(String)} reads single fields without the conversion.
+ * Source is never modified, so copies of the document share it until their content is materialized.
+ * Public, as expressions such as #[payload.content] call the getters through the class of the document. Instances are only created by {@link JavaMapDocument}.
+ * @author manik
+ *
+ */
+public class LazyJavaMapDocument extends JavaMapDocument {
+	
+	private JsonObject source;
+	
+	private String rawSource;
+	
+	LazyJavaMapDocument(String id, long cas, int expiry, JsonObject source, String rawSource) {
+		setId(id);
+		setCas(cas);
+		setExpiry(expiry);
+		this.source = source;
+		this.rawSource = rawSource;
+	}
+	
+	@Override
+	public Map<String, Object> getContent() {
+		if (isPending()) {
+			super.setContent(parsed().toMap());
+			source = null;
+		}
+		return super.getContent();
+	}
+	
+	@Override
+	public void setContent(Map<String, Object> content) {
+		source = null;
+		rawSource = null;
+		super.setContent(content);
+	}
+	
+	@Override
+	public Object getField(String name) {
+		if (!isPending()) return super.getField(name);
+		Object value = parsed().get(name);
+		if (value instanceof JsonObject) return ((JsonObject) value).toMap();
+		if (value instanceof JsonArray) return ((JsonArray) value).toList();
+		return value;
+	}
+	
+	@Override
+	public boolean hasContent() {
+		if (!isPending()) return super.hasContent();
+		return !parsed().isEmpty();
+	}
+	
+	@Override
+	protected JavaMapDocument copy() {
+		if (!isPending()) return super.copy();
+		return new LazyJavaMapDocument(getId(), getCas(), getExpiry(), source, rawSource);
+	}
+	
+	private boolean isPending() {
+		return source != null || rawSource != null;
+	}
+	
+	private JsonObject parsed() {
+		if (source == null) {
+			source = JsonObject.fromJson(rawSource);
+			rawSource = null;
+		}
+		return source;
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+/**
+ * Format of a document read or written without conversion to {@link JavaMapDocument}.
+ * @author manik
+ *
+ */
+public enum RawFormat {
+	/**
+	 * JSON text, exchanged as {@link String}. Stored with JSON flags, so it remains visible to N1QL and views.
+	 * @see com.couchbase.client.java.document.RawJsonDocument
+	 */
+	JSON,
+	/**
+	 * Opaque bytes, exchanged as byte[].
+	 * @see com.couchbase.client.java.document.BinaryDocument
+	 */
+	BINARY
+}
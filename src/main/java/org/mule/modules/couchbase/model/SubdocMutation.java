@@ -0,0 +1,103 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+import org.mule.api.annotations.Required;
+import org.mule.api.annotations.display.FriendlyName;
+import org.mule.api.annotations.param.Default;
+
+/**
+ * Single mutation of a sub-document mutate request.
+ * @author manik
+ *
+ */
+public class SubdocMutation {
+	
+	/**
+	 * Path inside the document, e.g. address.city or tags[0]
+	 */
+	@Required
+	@FriendlyName("Path")
+	private String path;
+	
+	@FriendlyName("Mutation")
+	@Default("UPSERT")
+	private SubdocMutationType type = SubdocMutationType.UPSERT;
+	
+	/**
+	 * Value to write. Ignored for REMOVE, for COUNTER the delta is used instead.
+	 */
+	@FriendlyName("Value")
+	private Object value;
+	
+	/**
+	 * Delta to add for COUNTER mutation, may be negative.
+	 */
+	@FriendlyName("Counter Delta")
+	@Default("1")
+	private long delta = 1;
+	
+	/**
+	 * Create missing intermediate path elements.
+	 */
+	@FriendlyName("Create Parents")
+	@Default("false")
+	private boolean createParents;
+	
+	public SubdocMutation(){
+		
+	}
+	
+	public SubdocMutation(SubdocMutationType type, String path, Object value){
+		setType(type);
+		setPath(path);
+		setValue(value);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public SubdocMutationType getType() {
+		return type;
+	}
+
+	public void setType(SubdocMutationType type) {
+		this.type = type;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public void setValue(Object value) {
+		this.value = value;
+	}
+
+	public long getDelta() {
+		return delta;
+	}
+
+	public void setDelta(long delta) {
+		this.delta = delta;
+	}
+
+	public boolean isCreateParents() {
+		return createParents;
+	}
+
+	public void setCreateParents(boolean createParents) {
+		this.createParents = createParents;
+	}
+	
+	@Override
+	public String toString() {
+		return type + " " + path;
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+/**
+ * Sub-document mutation applied to a path of a document.
+ * @author manik
+ *
+ */
+public enum SubdocMutationType {
+	UPSERT,
+	INSERT,
+	REPLACE,
+	ARRAY_APPEND,
+	ARRAY_PREPEND,
+	/**
+	 * Adds the delta to the number at path, the new value is returned in the result.
+	 */
+	COUNTER,
+	REMOVE
+}
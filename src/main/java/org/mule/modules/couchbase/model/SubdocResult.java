@@ -0,0 +1,52 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of a sub-document lookup or mutation. Values are keyed by path: looked up values (null if path does not exist), 
+ * existence flags for exists lookups and new values of counter mutations.
+ * @author manik
+ *
+ */
+public class SubdocResult {
+
+	private String id;
+	
+	private long cas;
+	
+	private Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public long getCas() {
+		return cas;
+	}
+
+	public void setCas(long cas) {
+		this.cas = cas;
+	}
+
+	public Map<String, Object> getValues() {
+		return values;
+	}
+
+	public void setValues(Map<String, Object> values) {
+		this.values = values;
+	}
+	
+	@Override
+	public String toString() {
+		return "Id: " + this.id + ", CAS: "+ this.cas + ", Values: " + this.values;
+	}
+}
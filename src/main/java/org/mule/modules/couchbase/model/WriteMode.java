@@ -0,0 +1,28 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.model;
+
+/**
+ * Store semantics used when writing a document.
+ * @author manik
+ *
+ */
+public enum WriteMode {
+	/**
+	 * Fails if a document with the same id already exists.
+	 * @see com.couchbase.client.java.Bucket#insert(com.couchbase.client.java.document.Document)
+	 */
+	INSERT,
+	/**
+	 * Inserts or overwrites the document.
+	 * @see com.couchbase.client.java.Bucket#upsert(com.couchbase.client.java.document.Document)
+	 */
+	UPSERT,
+	/**
+	 * Fails if a document with the same id does not exist.
+	 * @see com.couchbase.client.java.Bucket#replace(com.couchbase.client.java.document.Document)
+	 */
+	REPLACE
+}
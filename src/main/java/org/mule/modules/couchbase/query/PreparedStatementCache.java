@@ -0,0 +1,145 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.query;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.PreparedPayload;
+
+/**
+ * LRU cache of the plans of N1QL statements executed as prepared statements, keyed by statement text. 
+ * A statement is prepared with PREPARE on first use and its {@link PreparedPayload}, the prepared name and encoded plan returned 
+ * by the query service, is reused by later executions. Hits and misses count plan reuse, evictions count plans dropped by the size limit.
+ * @author manik
+ *
+ */
+public class PreparedStatementCache implements PreparedStatementCacheMBean {
+	
+	/**
+	 * Query service error codes signalling that a prepared plan is unknown or can not be decoded. 
+	 * The statement is rejected before execution, so it is safe to prepare and run it again.
+	 */
+	private static final int[] PLAN_INVALIDATED_CODES = {4040, 4050, 4070};
+	
+	private final Map<String, PreparedPayload> statements;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	private final AtomicLong reprepares = new AtomicLong();
+	
+	public PreparedStatementCache(final int maxStatements) {
+		this.statements = new LinkedHashMap<String, PreparedPayload>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedPayload> eldest) {
+				if (size() > maxStatements) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cached plan of given statement.
+	 * @param statement N1QL statement text
+	 * @return {@link PreparedPayload} of the statement, null if it has not been prepared yet
+	 */
+	public PreparedPayload get(String statement) {
+		synchronized (statements) {
+			PreparedPayload plan = statements.get(statement);
+			if (plan != null) {
+				hits.incrementAndGet();
+			} else {
+				misses.incrementAndGet();
+			}
+			return plan;
+		}
+	}
+	
+	/**
+	 * Caches the plan returned by the query service for given statement.
+	 * @param statement N1QL statement text
+	 * @param plan {@link PreparedPayload} of the statement
+	 */
+	public void put(String statement, PreparedPayload plan) {
+		synchronized (statements) {
+			statements.put(statement, plan);
+		}
+	}
+	
+	/**
+	 * Forgets the plan of given statement so that it is prepared again on next use.
+	 * @param statement N1QL statement text
+	 */
+	public void invalidate(String statement) {
+		reprepares.incrementAndGet();
+		synchronized (statements) {
+			statements.remove(statement);
+		}
+	}
+	
+	/**
+	 * Checks if query errors report a prepared plan unknown to or not decodable by the query service.
+	 * @param errors errors returned by the query service
+	 * @return true if the statement was not executed and should be prepared again
+	 */
+	public static boolean isPlanInvalidated(List<JsonObject> errors) {
+		for (JsonObject error : errors) {
+			Integer code = error.getInt("code");
+			if (code == null) continue;
+			for (int invalidated : PLAN_INVALIDATED_CODES) {
+				if (code == invalidated) return true;
+			}
+		}
+		return false;
+	}
+	
+	public int size() {
+		synchronized (statements) {
+			return statements.size();
+		}
+	}
+	
+	@Override
+	public int getSize() {
+		return size();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public long getReprepares() {
+		return reprepares.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "Statements: " + size() + ", Hits: " + getHits() + ", Misses: " + getMisses() + ", Evictions: " + getEvictions() + ", Re-prepares: " + getReprepares();
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.query;
+
+/**
+ * JMX view of the {@link PreparedStatementCache} of one connector config.
+ * @author manik
+ *
+ */
+public interface PreparedStatementCacheMBean {
+	
+	/**
+	 * @return number of statements with a cached plan.
+	 */
+	int getSize();
+	
+	long getHits();
+	
+	long getMisses();
+	
+	/**
+	 * @return plans dropped because the cache was full.
+	 */
+	long getEvictions();
+	
+	/**
+	 * @return statements prepared again after the query service rejected their plan.
+	 */
+	long getReprepares();
+}
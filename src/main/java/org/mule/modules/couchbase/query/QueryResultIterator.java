@@ -0,0 +1,175 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.query;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Blocking {@link Iterator} over the rows of a streamed N1QL query result, with bounded buffering between the response and the consumer.
+ * Rows are requested from the response in batches, at most buffer size rows ahead of the consumer. A response that does not honour
+ * these requests may send up to buffer size rows more, so at most twice the buffer size rows are held in memory. Beyond that the buffer 
+ * overflows: the response is released and the consumer gets a {@link MessagingException} naming the Buffer Size setting after the buffered rows, 
+ * instead of the whole result being buffered on the heap. There is no further flow control, the bound is what keeps memory in check.
+ * Consumers slower than the response, e.g. ones calling out for every row, need a buffer size covering the rows they fall behind.
+ * Closing the iterator unsubscribes from the response, releasing it when a consumer stops before the last row.
+ * @author manik
+ *
+ */
+public class QueryResultIterator implements Iterator<Map<String, Object>>, Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(QueryResultIterator.class);
+
+	private static final Object COMPLETED = new Object();
+
+	private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+	private final RowSubscriber subscriber;
+
+	private final int bufferSize;
+
+	private final int batchSize;
+
+	private final long timeoutMillis;
+
+	private Object next;
+
+	private int consumed;
+
+	private boolean done;
+
+	/**
+	 * Subscribes to given rows.
+	 * @param rows rows of the query result, terminated by the error of the query if it failed
+	 * @param bufferSize maximum number of rows buffered ahead of the consumer
+	 * @param timeoutMillis maximum time in milliseconds to wait for the next row
+	 */
+	public QueryResultIterator(Observable<Map<String, Object>> rows, int bufferSize, long timeoutMillis) {
+		if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be greater than 0");
+		this.bufferSize = bufferSize;
+		this.batchSize = Math.max(1, bufferSize / 2);
+		this.timeoutMillis = timeoutMillis;
+		this.subscriber = new RowSubscriber(bufferSize);
+		rows.subscribe(subscriber);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) return true;
+		if (done) return false;
+		Object item;
+		try {
+			item = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new MessagingException("Interrupted while waiting for rows of the N1QL Query", e);
+		}
+		if (item == null) {
+			close();
+			throw new MessagingException("Timed out after " + timeoutMillis + " ms waiting for rows of the N1QL Query");
+		}
+		if (item == COMPLETED) {
+			done = true;
+			return false;
+		}
+		if (item instanceof Throwable) {
+			done = true;
+			if (item instanceof RuntimeException) throw (RuntimeException) item;
+			throw new MessagingException("Failed to stream the N1QL Query", (Throwable) item);
+		}
+		next = item;
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<String, Object> next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		Map<String, Object> row = (Map<String, Object>) next;
+		next = null;
+		if (++consumed == batchSize) {
+			consumed = 0;
+			subscriber.requestMore(batchSize);
+		}
+		return row;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops streaming, unsubscribing from the response and dropping buffered rows. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		done = true;
+		next = null;
+		subscriber.unsubscribe();
+		queue.clear();
+	}
+
+	private final class RowSubscriber extends Subscriber<Map<String, Object>> {
+
+		private final int initialRequest;
+
+		/**
+		 * Rows requested but not delivered yet, negative when the response sends more rows than requested.
+		 */
+		private final AtomicLong outstanding = new AtomicLong();
+
+		RowSubscriber(int initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		@Override
+		public void onStart() {
+			requestMore(initialRequest);
+		}
+
+		void requestMore(long rows) {
+			outstanding.addAndGet(rows);
+			request(rows);
+		}
+
+		@Override
+		public void onNext(Map<String, Object> row) {
+			if (isUnsubscribed()) return;
+			if (outstanding.decrementAndGet() < -bufferSize) {
+				unsubscribe();
+				String message = "Streamed N1QL Query result overflowed buffer of " + bufferSize + " rows, consumer is more than " + 2 * bufferSize 
+						+ " rows behind. Raise Buffer Size of Execute Query (streaming) or consume rows faster.";
+				LOG.warn(message);
+				queue.offer(new MessagingException(message));
+				return;
+			}
+			queue.offer(row);
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			queue.offer(e);
+		}
+
+		@Override
+		public void onCompleted() {
+			queue.offer(COMPLETED);
+		}
+	}
+}
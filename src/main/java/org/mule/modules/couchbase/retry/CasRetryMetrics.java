@@ -0,0 +1,87 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of updates retried after a CAS mismatch, and the jittered exponential backoff applied between retries.
+ * @author manik
+ *
+ */
+public class CasRetryMetrics implements CasRetryMetricsMBean {
+	
+	private static final int MAX_BACKOFF_SHIFT = 10;
+	
+	private final AtomicLong retries = new AtomicLong();
+	
+	private final AtomicLong succeededAfterRetry = new AtomicLong();
+	
+	private final AtomicLong exhausted = new AtomicLong();
+	
+	private final AtomicLong backoffMillis = new AtomicLong();
+	
+	/**
+	 * Records a retry and returns the time to wait before it. Backoff doubles with every attempt and a random half of it is dropped, 
+	 * so updates that collided do not retry at the same moment again.
+	 * @param attempt retry attempt, starting at 1
+	 * @param initialBackoff backoff of the first retry in milliseconds
+	 * @return milliseconds to wait
+	 */
+	public long retry(int attempt, long initialBackoff) {
+		retries.incrementAndGet();
+		if (initialBackoff <= 0) return 0;
+		long ceiling = initialBackoff << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+		long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+		backoffMillis.addAndGet(delay);
+		return delay;
+	}
+	
+	public void succeededAfterRetry() {
+		succeededAfterRetry.incrementAndGet();
+	}
+	
+	public void exhausted() {
+		exhausted.incrementAndGet();
+	}
+	
+	/**
+	 * @return number of retries after a CAS mismatch.
+	 */
+	@Override
+	public long getRetries() {
+		return retries.get();
+	}
+	
+	/**
+	 * @return number of updates that succeeded after at least one retry.
+	 */
+	@Override
+	public long getSucceededAfterRetry() {
+		return succeededAfterRetry.get();
+	}
+	
+	/**
+	 * @return number of updates that still failed with a CAS mismatch after all retries, not counting updates allowed no retry.
+	 */
+	@Override
+	public long getExhausted() {
+		return exhausted.get();
+	}
+	
+	/**
+	 * @return total time in milliseconds spent waiting between retries.
+	 */
+	@Override
+	public long getBackoffMillis() {
+		return backoffMillis.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "Retries: " + getRetries() + ", Succeeded After Retry: " + getSucceededAfterRetry() + ", Exhausted: " + getExhausted() + ", Backoff (ms): " + getBackoffMillis();
+	}
+}
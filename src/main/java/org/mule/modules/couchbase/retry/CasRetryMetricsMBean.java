@@ -0,0 +1,33 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.retry;
+
+/**
+ * JMX view of the {@link CasRetryMetrics} of one connector config.
+ * @author manik
+ *
+ */
+public interface CasRetryMetricsMBean {
+	
+	/**
+	 * @return number of retries after a CAS mismatch.
+	 */
+	long getRetries();
+	
+	/**
+	 * @return number of updates that succeeded after at least one retry.
+	 */
+	long getSucceededAfterRetry();
+	
+	/**
+	 * @return number of updates that still failed with a CAS mismatch after all retries, not counting updates allowed no retry.
+	 */
+	long getExhausted();
+	
+	/**
+	 * @return total time in milliseconds spent waiting between retries.
+	 */
+	long getBackoffMillis();
+}
@@ -0,0 +1,78 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.WriteMode;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+
+public class AsyncDocumentTestCases extends CouchbaseAbstractTestCase {
+
+	private JavaMapDocument document(String id) {
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("name", "Name-" + id);
+		return new JavaMapDocument(id, content);
+	}
+	
+	@Test
+	public void testGetDocumentAsync() throws Exception {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		Future<JavaMapDocument> future = getConnector().getDocumentAsync(muleEvent, "user1");
+		JavaMapDocument returnDoc = (JavaMapDocument) getConnector().awaitResults(muleEvent, future, 30000);
+		
+		assertEquals(returnDoc.getId(), "user1");
+		assertEquals(returnDoc.getContent().get("state").toString(), "DE");
+	}
+	
+	@Test
+	public void testGetMissingDocumentAsync() throws Exception {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		assertNull(getConnector().awaitResults(muleEvent, getConnector().getDocumentAsync(muleEvent, "missing-async"), 30000));
+	}
+	
+	@Test
+	public void testAwaitSeveralWrites() throws Exception {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		List<Future<JavaMapDocument>> futures = new ArrayList<Future<JavaMapDocument>>();
+		futures.add(getConnector().writeDocumentAsync(muleEvent, document("async1"), WriteMode.UPSERT));
+		futures.add(getConnector().writeDocumentAsync(muleEvent, document("async2"), WriteMode.UPSERT));
+		
+		List<?> results = (List<?>) getConnector().awaitResults(muleEvent, futures, 30000);
+		
+		assertEquals(results.size(), 2);
+		assertEquals(((JavaMapDocument) results.get(1)).getId(), "async2");
+		assertNotNull(getConnector().getDocument(muleEvent, "async1", false, 0, false, 0));
+	}
+	
+	@Test(expected = DocumentAlreadyExistsException.class)
+	public void testWriteFailureIsRaisedOnAwait() throws Exception {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		getConnector().awaitResults(muleEvent, getConnector().writeDocumentAsync(muleEvent, document("user1"), WriteMode.INSERT), 30000);
+	}
+	
+	@Test
+	public void testDeleteDocumentAsync() throws Exception {
+		org.mule.api.MuleEvent muleEvent = null;
+		getConnector().upsertDocument(muleEvent, document("async3"), PersistTo.NONE, ReplicateTo.NONE);
+		
+		assertEquals(getConnector().awaitResults(muleEvent, getConnector().deleteDocumentAsync(muleEvent, document("async3"), false), 30000), Boolean.TRUE);
+		assertEquals(getConnector().awaitResults(muleEvent, getConnector().deleteDocumentAsync(muleEvent, document("async3"), false), 30000), Boolean.FALSE);
+	}
+}
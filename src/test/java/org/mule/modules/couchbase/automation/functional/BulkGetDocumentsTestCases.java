@@ -0,0 +1,48 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.BulkGetResult;
+
+public class BulkGetDocumentsTestCases extends CouchbaseAbstractTestCase {
+
+	@Test
+	public void testAllDocumentsFound() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkGetResult result = getConnector().getDocuments(muleEvent, Arrays.asList("user1", "user2", "user3"), 2, 10000);
+		
+		assertEquals(result.getDocuments().size(), 3);
+		assertEquals(result.getMissingIds().size(), 0);
+		assertEquals(result.getDocuments().get("user1").getContent().get("state").toString(), "DE");
+		assertEquals(result.getDocumentList().get(2).getId(), "user3");
+	}
+	
+	@Test
+	public void testMissingDocumentsReported() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkGetResult result = getConnector().getDocuments(muleEvent, Arrays.asList("user1", "user8", "user1", "user9"), 64, 10000);
+		
+		assertEquals(result.getDocuments().size(), 1);
+		assertNotNull(result.getDocuments().get("user1"));
+		assertEquals(result.getMissingIds(), Arrays.asList("user8", "user9"));
+	}
+	
+	@Test
+	public void testEmptyIdList() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkGetResult result = getConnector().getDocuments(muleEvent, Collections.<String>emptyList(), 64, 10000);
+		
+		assertEquals(result.getDocuments().size(), 0);
+		assertEquals(result.getMissingIds().size(), 0);
+	}
+}
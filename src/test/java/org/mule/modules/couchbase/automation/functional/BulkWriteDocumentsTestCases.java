@@ -0,0 +1,100 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.BulkWriteResult;
+import org.mule.modules.couchbase.model.DocumentWriteOutcome;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.WriteMode;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+
+public class BulkWriteDocumentsTestCases extends CouchbaseAbstractTestCase {
+
+	private List<JavaMapDocument> documents(String... ids) {
+		List<JavaMapDocument> documents = new ArrayList<JavaMapDocument>();
+		for (String id : ids) {
+			Map<String, Object> content = new HashMap<String, Object>();
+			content.put("name", "Name-" + id);
+			documents.add(new JavaMapDocument(id, content));
+		}
+		return documents;
+	}
+	
+	@Test
+	public void testBulkUpsert() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkWriteResult result = getConnector().writeDocuments(muleEvent, documents("user1", "user6", "user7"), WriteMode.UPSERT, PersistTo.NONE, ReplicateTo.NONE, 2, 30000);
+		
+		assertEquals(result.isAllSuccessful(), Boolean.TRUE);
+		assertEquals(result.getOutcomes().size(), 3);
+		assertEquals(result.getOutcomes().get(1).getId(), "user6");
+		
+		JavaMapDocument returnDoc = getConnector().getDocument(muleEvent, "user7", false, 0, false, 0);
+		assertEquals(returnDoc.getCas(), result.getOutcomes().get(2).getCas());
+		assertEquals(returnDoc.getContent().get("name").toString(), "Name-user7");
+	}
+	
+	@Test
+	public void testDurableBulkUpsert() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkWriteResult result = getConnector().writeDocuments(muleEvent, documents("durable2", "durable3", "durable4"), WriteMode.UPSERT, PersistTo.MASTER, ReplicateTo.NONE, 64, 30000);
+		
+		assertEquals(result.isAllSuccessful(), Boolean.TRUE);
+		assertEquals(result.getSuccessCount(), 3);
+	}
+	
+	@Test
+	public void testBulkInsertPartialFailure() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkWriteResult result = getConnector().writeDocuments(muleEvent, documents("user6", "user1", "user7"), WriteMode.INSERT, PersistTo.NONE, ReplicateTo.NONE, 64, 30000);
+		
+		assertEquals(result.getSuccessCount(), 2);
+		assertEquals(result.getFailures().size(), 1);
+		assertEquals(result.getFailures().get(0).getIndex(), 1);
+		assertEquals(result.getFailures().get(0).getException().getClass().getName(), DocumentAlreadyExistsException.class.getName());
+		assertNotNull(getConnector().getDocument(muleEvent, "user7", false, 0, false, 0));
+	}
+	
+	@Test
+	public void testBulkReplacePartialFailure() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		BulkWriteResult result = getConnector().writeDocuments(muleEvent, documents("user1", "user6"), WriteMode.REPLACE, PersistTo.NONE, ReplicateTo.NONE, 64, 30000);
+		
+		assertEquals(result.getOutcomes().get(0).isSuccess(), Boolean.TRUE);
+		assertEquals(result.getOutcomes().get(1).getException().getClass().getName(), DocumentDoesNotExistException.class.getName());
+	}
+	
+	@Test
+	public void testBulkWriteTimeoutKeepsPartialOutcomes() {
+		String[] ids = new String[500];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = "timeout" + i;
+		}
+		
+		BulkWriteResult result = getConnector().writeDocuments(null, documents(ids), WriteMode.UPSERT, PersistTo.NONE, ReplicateTo.NONE, 1, 1);
+		
+		assertEquals(result.getOutcomes().size(), ids.length);
+		assertEquals(result.getFailures().isEmpty(), Boolean.FALSE);
+		for (DocumentWriteOutcome failure : result.getFailures()) {
+			assertEquals(failure.getException().getClass().getName(), TimeoutException.class.getName());
+		}
+	}
+}
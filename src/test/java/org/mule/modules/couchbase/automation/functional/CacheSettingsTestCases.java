@@ -0,0 +1,171 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.api.ConnectionException;
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.config.CouchbaseClusterClient;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+
+public class CacheSettingsTestCases extends CouchbaseAbstractTestCase {
+
+	private void assertRejected(CouchbaseConnectorConfig config, String setting) {
+		try {
+			config.connect("127.0.0.1");
+			config.disconnect();
+			throw new AssertionError("Expected ConnectionException for " + setting);
+		} catch (ConnectionException e) {
+			MatcherAssert.assertThat(e.getMessage(), Matchers.containsString(setting));
+			assertEquals(config.isConnected(), false);
+		}
+	}
+
+	@Test
+	public void testNegativeOffHeapCacheSizeRejected() {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(-1);
+		assertRejected(config, "Memory Cap (MB)");
+	}
+
+	@Test
+	public void testOversizedOffHeapCacheRejected() {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(OffHeapDocumentCache.MAX_SIZE_MB + 1);
+		assertRejected(config, "Memory Cap (MB)");
+	}
+
+	@Test
+	public void testDisabledOffHeapCacheSizeIgnored() throws ConnectionException {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setOffHeapCacheSizeMb(-1);
+		config.connect("127.0.0.1");
+		try {
+			assertNull(config.getOffHeapDocumentCache());
+		} finally {
+			config.disconnect();
+		}
+	}
+
+	@Test
+	public void testNearCacheWithoutEntriesRejected() {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setNearCacheEnabled(true);
+		config.setNearCacheMaxEntries(0);
+		assertRejected(config, "Maximum Entries");
+	}
+
+	/**
+	 * A config failing after the cluster client was acquired releases it, so the client is disconnected with its last config.
+	 */
+	@Test
+	public void testFailedConnectReleasesClient() throws ConnectionException {
+		CouchbaseConnectorConfig config = newConfig();
+		// own client, not shared with other tests
+		config.setKvTimeout(12345);
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(1);
+		config.setEventListenerClass("org.mule.modules.couchbase.MissingEventListener");
+		assertRejected(config, "MissingEventListener");
+		assertNull(config.getOffHeapDocumentCache());
+		assertNull(config.getMetrics());
+
+		CouchbaseClusterClient client = CouchbaseClusterClient.connect("127.0.0.1", config);
+		client.disconnect();
+		assertEquals(client.isConnected(), false);
+	}
+
+	/**
+	 * Gets user1 twice, upserts it and gets it again through a connector of given config.
+	 * @return CAS of the upserted document, the last get must return it with the new content.
+	 */
+	private long getUpsertGet(CouchbaseConnectorConfig config) {
+		CouchbaseConnector connector = new CouchbaseConnector();
+		connector.setConfig(config);
+		JavaMapDocument read = connector.getDocument(null, "user1", false, 0, false, 0);
+		assertEquals(connector.getDocument(null, "user1", false, 0, false, 0).getCas(), read.getCas());
+		
+		Map<String, Object> content = new HashMap<String, Object>(read.getContent());
+		content.put("name", "Cached-user1");
+		JavaMapDocument written = connector.upsertDocument(null, new JavaMapDocument("user1", content), PersistTo.NONE, ReplicateTo.NONE);
+		
+		JavaMapDocument reread = connector.getDocument(null, "user1", false, 0, false, 0);
+		assertEquals(reread.getCas(), written.getCas());
+		assertEquals(reread.getContent().get("name"), (Object) "Cached-user1");
+		MatcherAssert.assertThat(written.getCas(), Matchers.not(read.getCas()));
+		return written.getCas();
+	}
+	
+	@Test
+	public void testNearCacheGetSeesUpsert() throws ConnectionException {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setNearCacheEnabled(true);
+		config.setNearCacheMaxEntries(100);
+		config.setNearCacheTtlSeconds(60);
+		config.connect("127.0.0.1");
+		try {
+			long hits = config.getDocumentCache().getHits();
+			long cas = getUpsertGet(config);
+			
+			assertEquals(config.getDocumentCache().getHits(), hits + 1);
+			assertEquals(config.getDocumentCache().get("user1").getCas(), cas);
+		} finally {
+			config.getDocumentCache().clear();
+			config.disconnect();
+		}
+	}
+	
+	@Test
+	public void testOffHeapCacheGetSeesUpsert() throws ConnectionException {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(1);
+		config.setOffHeapCacheTtlSeconds(60);
+		config.connect("127.0.0.1");
+		try {
+			long hits = config.getOffHeapDocumentCache().getHits();
+			long cas = getUpsertGet(config);
+			
+			assertEquals(config.getOffHeapDocumentCache().getHits(), hits + 1);
+			assertEquals(config.getOffHeapDocumentCache().get("user1").getCas(), cas);
+		} finally {
+			config.getOffHeapDocumentCache().clear();
+			config.disconnect();
+		}
+	}
+	
+	@Test
+	public void testNearAndOffHeapCacheGetSeesUpsert() throws ConnectionException {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setNearCacheEnabled(true);
+		config.setNearCacheMaxEntries(100);
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(1);
+		config.connect("127.0.0.1");
+		try {
+			long cas = getUpsertGet(config);
+			
+			assertEquals(config.getDocumentCache().get("user1").getCas(), cas);
+			assertEquals(config.getOffHeapDocumentCache().get("user1").getCas(), cas);
+		} finally {
+			config.getDocumentCache().clear();
+			config.getOffHeapDocumentCache().clear();
+			config.disconnect();
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.RawFormat;
+import org.mule.modules.couchbase.model.WriteMode;
+
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+
+public class CounterTestCases extends CouchbaseAbstractTestCase {
+
+	@Test
+	public void testCounterCreatedWithInitialValue() {
+		assertEquals(getConnector().counter(null, "counter1", 1, 10l, 0), 10l);
+		assertEquals(getConnector().counter(null, "counter1", 5, 10l, 0), 15l);
+		assertEquals(getConnector().counter(null, "counter1", -3, 10l, 0), 12l);
+	}
+	
+	@Test(expected=DocumentDoesNotExistException.class)
+	public void testMissingCounterWithoutInitialValue() {
+		getConnector().counter(null, "counter2", 1, null, 0);
+	}
+	
+	@Test
+	public void testAppendAndPrepend() throws Exception {
+		getConnector().writeRawDocument(null, "log1", "b", WriteMode.UPSERT, RawFormat.BINARY, -1, 0);
+		
+		JavaMapDocument appended = getConnector().appendDocument(null, "log1", "c", 0);
+		getConnector().prependDocument(null, "log1", "a".getBytes("UTF-8"), 0);
+		
+		assertEquals(appended.getId(), "log1");
+		assertEquals(new String((byte[]) getConnector().getRawDocument(null, "log1", RawFormat.BINARY), "UTF-8"), "abc");
+	}
+	
+	@Test(expected=DocumentDoesNotExistException.class)
+	public void testAppendToMissingDocument() throws Exception {
+		getConnector().appendDocument(null, "log2", "c", 0);
+	}
+}
@@ -11,6 +11,8 @@ import org.junit.Test;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
 import org.mule.modules.couchbase.model.JavaMapDocument;
 
+import com.couchbase.client.java.error.CASMismatchException;
+
 
 public class DeleteDocumentTestCases extends CouchbaseAbstractTestCase {
 
@@ -25,7 +27,7 @@ public class DeleteDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","MyName");
 		javaMapDocument.setContent(content);
 		
-		boolean result = getConnector().deleteDocument(muleEvent, javaMapDocument);
+		boolean result = getConnector().deleteDocument(muleEvent, javaMapDocument, false);
 		assertEquals(result, Boolean.FALSE);
 	}
 	
@@ -40,8 +42,30 @@ public class DeleteDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","User1");
 		javaMapDocument.setContent(content);
 		
-		boolean result = getConnector().deleteDocument(muleEvent, javaMapDocument);
+		boolean result = getConnector().deleteDocument(muleEvent, javaMapDocument, false);
+		assertEquals(result, Boolean.TRUE);
+	}
+	
+	@Test(expected=CASMismatchException.class)
+	public void testCasMismatchDeleteFailure(){
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		JavaMapDocument javaMapDocument = new JavaMapDocument();
+		javaMapDocument.setId("user1");
+		javaMapDocument.setCas(1l);
+		
+		getConnector().deleteDocument(muleEvent, javaMapDocument, true);
+	}
+	
+	@Test
+	public void testCasMatchDelete(){
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		JavaMapDocument javaMapDocument = getConnector().getDocument(muleEvent, "user1", false, 0, false, 0);
+		
+		boolean result = getConnector().deleteDocument(muleEvent, javaMapDocument, true);
 		assertEquals(result, Boolean.TRUE);
+		assertNull(getConnector().getDocument(muleEvent, "user1", false, 0, false, 0));
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.cache.DocumentCache;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+public class DocumentCacheTestCases {
+
+	private JavaMapDocument document(String id) {
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("name", "Name-" + id);
+		JavaMapDocument document = new JavaMapDocument(id, content);
+		document.setCas(10l);
+		return document;
+	}
+	
+	@Test
+	public void testHitAndMiss() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		cache.put(document("user1"));
+		JavaMapDocument cached = cache.get("user1");
+		
+		MatcherAssert.assertThat(cached.getCas(), Matchers.equalTo(10l));
+		MatcherAssert.assertThat(cached.getContent().get("name"), Matchers.equalTo((Object) "Name-user1"));
+		MatcherAssert.assertThat(cache.getHits(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(cache.getMisses(), Matchers.equalTo(1l));
+	}
+	
+	@Test
+	public void testReturnedDocumentIsACopy() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		cache.put(document("user1"));
+		
+		cache.get("user1").getContent().put("name", "changed");
+		
+		MatcherAssert.assertThat(cache.get("user1").getContent().get("name"), Matchers.equalTo((Object) "Name-user1"));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		DocumentCache cache = new DocumentCache(2, 60);
+		cache.put(document("user1"));
+		cache.put(document("user2"));
+		cache.get("user1");
+		cache.put(document("user3"));
+		
+		MatcherAssert.assertThat(cache.get("user2"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.notNullValue());
+		MatcherAssert.assertThat(cache.getEvictions(), Matchers.equalTo(1l));
+	}
+	
+	@Test
+	public void testInvalidate() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		cache.put(document("user1"));
+		cache.invalidate("user1");
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+	}
+	
+	@Test
+	public void testExpiredEntry() {
+		DocumentCache cache = new DocumentCache(10, 0);
+		cache.put(document("user1"));
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.size(), Matchers.equalTo(0));
+	}
+	
+	@Test
+	public void testReadBeforeInvalidateIsNotCached() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		long readStamp = cache.readStamp();
+		cache.invalidate("user1");
+		cache.put(document("user1"), readStamp);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.getStalePuts(), Matchers.equalTo(1l));
+		
+		cache.put(document("user1"), cache.readStamp());
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.notNullValue());
+	}
+	
+	@Test
+	public void testOlderCasDoesNotReplaceNewer() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		JavaMapDocument newer = document("user1");
+		newer.setCas(20l);
+		cache.put(newer);
+		cache.put(document("user1"));
+		
+		MatcherAssert.assertThat(cache.get("user1").getCas(), Matchers.equalTo(20l));
+		MatcherAssert.assertThat(cache.getStalePuts(), Matchers.equalTo(1l));
+	}
+	
+	@Test
+	public void testReadBeforeForgottenInvalidationsIsNotCached() {
+		DocumentCache cache = new DocumentCache(10, 60);
+		long readStamp = cache.readStamp();
+		for (int i = 0; i <= 10000; i++) {
+			cache.invalidate("other" + i);
+		}
+		cache.put(document("user1"), readStamp);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+	}
+}
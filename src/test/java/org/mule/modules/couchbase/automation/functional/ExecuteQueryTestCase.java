@@ -1,7 +1,10 @@
 package org.mule.modules.couchbase.automation.functional;
 
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
 
 public class ExecuteQueryTestCase extends CouchbaseAbstractTestCase {
 
@@ -14,10 +17,26 @@ public class ExecuteQueryTestCase extends CouchbaseAbstractTestCase {
 //		String query = "select * from default where type = 'user'";
 //		org.mule.api.MuleEvent muleEvent = null;
 //		
-//		List<Map<String, Object>> lst = getConnector().executeQuery(muleEvent, query, Collections.EMPTY_LIST);
+//		List<Map<String, Object>> lst = getConnector().executeQuery(muleEvent, query, Collections.EMPTY_LIST, false, null);
 //		
 //		assertNotNull(lst);
 //		
 	}
 	
+	@Test
+	public void testPreparedStatementCacheSharedByConfigsOfBucket() throws Exception {
+		CouchbaseConnectorConfig first = newConfig();
+		CouchbaseConnectorConfig second = newConfig();
+		first.connect("127.0.0.1");
+		try {
+			second.connect("127.0.0.1");
+			
+			MatcherAssert.assertThat(first.getPreparedStatementCache(), Matchers.notNullValue());
+			MatcherAssert.assertThat(second.getPreparedStatementCache(), Matchers.sameInstance(first.getPreparedStatementCache()));
+		} finally {
+			second.disconnect();
+			first.disconnect();
+		}
+	}
+	
 }
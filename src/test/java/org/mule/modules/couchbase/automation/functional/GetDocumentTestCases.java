@@ -7,9 +7,14 @@ package org.mule.modules.couchbase.automation.functional;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
 import org.mule.modules.couchbase.model.JavaMapDocument;
 
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
 import com.couchbase.client.java.error.CASMismatchException;
 
 public class GetDocumentTestCases extends CouchbaseAbstractTestCase {
@@ -46,6 +51,39 @@ public class GetDocumentTestCases extends CouchbaseAbstractTestCase {
 		
 	}
 	
+	/**
+	 * Documents read from database are evaluated by expressions like any other {@link JavaMapDocument}, before their content is converted.
+	 */
+	@Test
+	public void verifyDocumentFieldsReadByExpression() throws MuleException {
+		MuleContext muleContext = startMuleContext();
+		try {
+			JavaMapDocument returnDoc = getConnector().getDocument(null, "user1", false, 0, false, 60);
+			MuleEvent muleEvent = newMuleEvent(muleContext, returnDoc);
+			
+			MatcherAssert.assertThat(muleContext.getExpressionManager().evaluate("#[payload.getField('state')]", muleEvent), Matchers.<Object>equalTo("DE"));
+			MatcherAssert.assertThat(muleContext.getExpressionManager().evaluate("#[payload.content.state]", muleEvent), Matchers.<Object>equalTo("DE"));
+		} finally {
+			muleContext.dispose();
+		}
+	}
+	
+	/**
+	 * Fields can be read before and after content is converted to {@link java.util.Map}, with the same values.
+	 */
+	@Test
+	public void verifyDocumentFieldAccess() {
+		org.mule.api.MuleEvent muleEvent = null;
+		JavaMapDocument returnDoc = getConnector().getDocument(muleEvent, "user1", false, 0, false, 60);
+		
+		MatcherAssert.assertThat(returnDoc.getField("state").toString(), Matchers.equalTo("DE"));
+		MatcherAssert.assertThat(returnDoc.getField("missing"), Matchers.nullValue());
+		
+		returnDoc.getContent().put("state", "CA");
+		MatcherAssert.assertThat(returnDoc.getField("state").toString(), Matchers.equalTo("CA"));
+		
+	}
+	
 	/**
 	 * Tests the Pessimistic locking of a document. Locked document can only be updated if CAS matches with the value stored in server.
 	 * Incorrect CAS value in update should result in exception.
@@ -72,7 +110,7 @@ public class GetDocumentTestCases extends CouchbaseAbstractTestCase {
 		
 		try {
 
-			getConnector().updateDocument(muleEvent, newDoc);
+			getConnector().updateDocument(muleEvent, newDoc, PersistTo.NONE, ReplicateTo.NONE, false, 5, 10, null);
 			
 		} catch (CASMismatchException e) {
 			asExpected = true;
@@ -99,7 +137,7 @@ public class GetDocumentTestCases extends CouchbaseAbstractTestCase {
 		//Change an attribute, keeping CAS same.
 		returnDoc.getContent().put("city", "anything");
 	
-		JavaMapDocument returnDoc2 = getConnector().updateDocument(muleEvent, returnDoc);
+		JavaMapDocument returnDoc2 = getConnector().updateDocument(muleEvent, returnDoc, PersistTo.NONE, ReplicateTo.NONE, false, 5, 10, null);
 			
 		MatcherAssert.assertThat(returnDoc2.getContent().get("city").toString(), Matchers.equalTo("anything"));
 	}
@@ -11,6 +11,8 @@ import org.junit.Test;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
 import org.mule.modules.couchbase.model.JavaMapDocument;
 
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
 import com.couchbase.client.java.error.DocumentAlreadyExistsException;
 
 public class InsertDocumentTestCases extends CouchbaseAbstractTestCase {
@@ -26,7 +28,7 @@ public class InsertDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","MyName");
 		javaMapDocument.setContent(content);
 		
-		getConnector().insertDocument(muleEvent, javaMapDocument);
+		getConnector().insertDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE);
 		
 	}
 	
@@ -42,7 +44,7 @@ public class InsertDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("state","CA");
 		javaMapDocument.setContent(content);
 		
-		JavaMapDocument returnDoc = getConnector().insertDocument(muleEvent, javaMapDocument);
+		JavaMapDocument returnDoc = getConnector().insertDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE);
 		
 		assertNotNull(returnDoc.getCas());
 		assertEquals(returnDoc.getId(), "user6");
@@ -0,0 +1,93 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+
+public class JavaMapDocumentTestCases {
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCloneIsDeepCopy() {
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("city", "Berlin");
+		List<Object> tags = new ArrayList<Object>();
+		tags.add("a");
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("address", address);
+		content.put("tags", tags);
+		JavaMapDocument document = new JavaMapDocument("user1", content);
+		document.setCas(10l);
+		
+		JavaMapDocument copy = document.clone();
+		((Map<String, Object>) copy.getContent().get("address")).put("city", "Paris");
+		((List<Object>) copy.getContent().get("tags")).add("b");
+		
+		MatcherAssert.assertThat(address.get("city"), Matchers.equalTo((Object) "Berlin"));
+		MatcherAssert.assertThat(tags.size(), Matchers.equalTo(1));
+		MatcherAssert.assertThat(copy.getId(), Matchers.equalTo("user1"));
+		MatcherAssert.assertThat(copy.getCas(), Matchers.equalTo(10l));
+	}
+	
+	@Test
+	public void testCloneOfNonHashMapContent() {
+		Map<String, Object> content = new TreeMap<String, Object>();
+		content.put("b", 2);
+		content.put("a", 1);
+		
+		JavaMapDocument copy = new JavaMapDocument("user1", content).clone();
+		
+		MatcherAssert.assertThat(copy.getContent(), Matchers.equalTo(content));
+		MatcherAssert.assertThat(new ArrayList<String>(copy.getContent().keySet()), Matchers.contains("a", "b"));
+	}
+	
+	@Test
+	public void testCloneOfNullContent() {
+		JavaMapDocument copy = new JavaMapDocument("user1").clone();
+		
+		MatcherAssert.assertThat(copy.getContent(), Matchers.nullValue());
+		MatcherAssert.assertThat(copy.hasContent(), Matchers.equalTo(false));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCloneOfDocumentReadFromDatabase() {
+		JsonObject content = JsonObject.create().put("name", "Name").put("tags", JsonArray.from("a"));
+		JavaMapDocument document = JavaMapDocument.fromJsonDocument(JsonDocument.create("user1", 0, content, 10l));
+		
+		JavaMapDocument copy = document.clone();
+		((List<Object>) copy.getContent().get("tags")).add("b");
+		copy.getContent().put("name", "Changed");
+		
+		MatcherAssert.assertThat(document.getField("name"), Matchers.equalTo((Object) "Name"));
+		MatcherAssert.assertThat(((List<Object>) document.getContent().get("tags")).size(), Matchers.equalTo(1));
+	}
+	
+	@Test
+	public void testHasContent() {
+		MatcherAssert.assertThat(new JavaMapDocument("user1").hasContent(), Matchers.equalTo(false));
+		MatcherAssert.assertThat(new JavaMapDocument("user1", new LinkedHashMap<String, Object>()).hasContent(), Matchers.equalTo(false));
+		
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("name", "Name");
+		MatcherAssert.assertThat(new JavaMapDocument("user1", content).hasContent(), Matchers.equalTo(true));
+		MatcherAssert.assertThat(JavaMapDocument.fromRawJson("user1", 10l, 0, "{\"name\":\"Name\"}").hasContent(), Matchers.equalTo(true));
+		MatcherAssert.assertThat(JavaMapDocument.fromRawJson("user1", 10l, 0, "{}").hasContent(), Matchers.equalTo(false));
+	}
+}
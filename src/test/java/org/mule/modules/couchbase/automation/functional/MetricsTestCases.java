@@ -0,0 +1,241 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.cache.DocumentCache;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.cache.SingleFlight;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+import org.mule.modules.couchbase.metrics.ConnectorMetrics;
+import org.mule.modules.couchbase.metrics.LatencyHistogram;
+import org.mule.modules.couchbase.metrics.Operation;
+import org.mule.modules.couchbase.metrics.SlowOperation;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.WriteMode;
+import org.mule.modules.couchbase.query.PreparedStatementCache;
+import org.mule.modules.couchbase.retry.CasRetryMetrics;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class MetricsTestCases extends CouchbaseAbstractTestCase {
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+		
+		assertEquals(histogram.getCount(), 1000l);
+		assertEquals(histogram.getMax(), 1000000l);
+		assertWithin(histogram.getPercentile(50), 500000l);
+		assertWithin(histogram.getPercentile(99), 990000l);
+		assertWithin(histogram.getPercentile(99.9), 999000l);
+		assertEquals(histogram.getPercentile(100), 1000000l);
+	}
+	
+	private void assertWithin(long actual, long expected) {
+		MatcherAssert.assertThat(actual, Matchers.both(Matchers.greaterThanOrEqualTo(expected)).and(Matchers.lessThanOrEqualTo(expected + expected / 8)));
+	}
+	
+	@Test
+	public void testEmptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		assertEquals(histogram.getPercentile(99), 0l);
+		assertEquals(histogram.getMean(), 0l);
+	}
+	
+	@Test
+	public void testErrorsRecorded() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		metrics.record(Operation.UPDATE, System.nanoTime(), true);
+		metrics.record(Operation.UPDATE, System.nanoTime(), false);
+		
+		assertEquals(metrics.get(Operation.UPDATE).getCount(), 2l);
+		assertEquals(metrics.get(Operation.UPDATE).getErrors(), 1l);
+		assertEquals(metrics.get(Operation.GET).getCount(), 0l);
+	}
+	
+	@Test
+	public void testGetDocumentExposedThroughJmx() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<ObjectName> names = server.queryNames(new ObjectName(ConnectorMetrics.JMX_DOMAIN + ":type=OperationMetrics,operation=get,*"), null);
+		assertEquals(names.size(), 1);
+		ObjectName name = names.iterator().next();
+		long before = (Long) server.getAttribute(name, "Count");
+		
+		getConnector().getDocument(null, "user1", false, 0, false, 0);
+		
+		assertEquals(server.getAttribute(name, "Count"), before + 1);
+	}
+	
+	@Test
+	public void testCachesExposedThroughJmx() throws Exception {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		DocumentCache cache = new DocumentCache(10, 60);
+		OffHeapDocumentCache offHeapCache = new OffHeapDocumentCache(64 * 1024, 60);
+		Map<String, Object> components = new LinkedHashMap<String, Object>();
+		components.put("DocumentCache", cache);
+		components.put("OffHeapDocumentCache", offHeapCache);
+		metrics.register("jmx-test", "default", components);
+		try {
+			cache.get("user1");
+			offHeapCache.get("user1");
+			
+			assertEquals(attribute("DocumentCache", "Misses"), 1l);
+			assertEquals(attribute("DocumentCache", "Size"), 0);
+			assertEquals(attribute("OffHeapDocumentCache", "Misses"), 1l);
+			assertEquals(attribute("OffHeapDocumentCache", "CapacityBytes"), offHeapCache.getCapacityBytes());
+		} finally {
+			metrics.unregister();
+		}
+	}
+	
+	@Test
+	public void testCoalescedGetsExposedThroughJmx() throws Exception {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		SingleFlight<String> coalescedGets = new SingleFlight<String>();
+		metrics.register("jmx-test", "default", Collections.singletonMap("CoalescedGets", coalescedGets));
+		try {
+			coalescedGets.execute("user1", new Callable<String>() {
+				@Override
+				public String call() {
+					return "user1";
+				}
+			});
+			
+			assertEquals(attribute("CoalescedGets", "Requests"), 1l);
+			assertEquals(attribute("CoalescedGets", "Coalesced"), 0l);
+		} finally {
+			metrics.unregister();
+		}
+	}
+	
+	@Test
+	public void testPreparedStatementCacheExposedThroughJmx() throws Exception {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		PreparedStatementCache cache = new PreparedStatementCache(10);
+		metrics.register("jmx-test", "default", Collections.singletonMap("PreparedStatementCache", cache));
+		try {
+			cache.get("SELECT 1");
+			cache.invalidate("SELECT 1");
+			
+			assertEquals(attribute("PreparedStatementCache", "Misses"), 1l);
+			assertEquals(attribute("PreparedStatementCache", "Reprepares"), 1l);
+			assertEquals(attribute("PreparedStatementCache", "Size"), 0);
+		} finally {
+			metrics.unregister();
+		}
+	}
+	
+	@Test
+	public void testCasRetryMetricsExposedThroughJmx() throws Exception {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		CasRetryMetrics casRetryMetrics = new CasRetryMetrics();
+		metrics.register("jmx-test", "default", Collections.singletonMap("CasRetryMetrics", casRetryMetrics));
+		try {
+			casRetryMetrics.retry(1, 0);
+			casRetryMetrics.succeededAfterRetry();
+			
+			assertEquals(attribute("CasRetryMetrics", "Retries"), 1l);
+			assertEquals(attribute("CasRetryMetrics", "SucceededAfterRetry"), 1l);
+			assertEquals(attribute("CasRetryMetrics", "Exhausted"), 0l);
+		} finally {
+			metrics.unregister();
+		}
+	}
+	
+	@Test
+	public void testObservableRecordedOnceWhenTerminated() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		PublishSubject<String> completed = PublishSubject.create();
+		PublishSubject<String> failed = PublishSubject.create();
+		PublishSubject<String> closed = PublishSubject.create();
+		metrics.time(completed, Operation.QUERY_STREAMING, "SELECT 1", System.nanoTime()).subscribe(new TestSubscriber<String>());
+		metrics.time(failed, Operation.QUERY_STREAMING, "SELECT 2", System.nanoTime()).subscribe(new TestSubscriber<String>());
+		Subscription subscription = metrics.time(closed, Operation.QUERY_STREAMING, "SELECT 3", System.nanoTime()).subscribe(new TestSubscriber<String>());
+		
+		completed.onNext("row");
+		assertEquals(metrics.get(Operation.QUERY_STREAMING).getCount(), 0l);
+		completed.onCompleted();
+		failed.onError(new IllegalStateException("failed"));
+		subscription.unsubscribe();
+		subscription.unsubscribe();
+		
+		assertEquals(metrics.get(Operation.QUERY_STREAMING).getCount(), 3l);
+		assertEquals(metrics.get(Operation.QUERY_STREAMING).getErrors(), 1l);
+	}
+	
+	@Test
+	public void testAsyncOperationsRecorded() throws Exception {
+		ConnectorMetrics metrics = getConnector().getConfig().getMetrics();
+		long gets = metrics.get(Operation.GET_ASYNC).getCount();
+		long writes = metrics.get(Operation.WRITE_ASYNC).getCount();
+		long deletes = metrics.get(Operation.DELETE_ASYNC).getCount();
+		JavaMapDocument document = new JavaMapDocument("metrics-async", Collections.<String, Object>singletonMap("name", "async"));
+		
+		getConnector().awaitResults(null, Arrays.asList(getConnector().getDocumentAsync(null, "user1"), 
+				getConnector().writeDocumentAsync(null, document, WriteMode.UPSERT)), 30000);
+		getConnector().awaitResults(null, getConnector().deleteDocumentAsync(null, document, false), 30000);
+		
+		assertEquals(metrics.get(Operation.GET_ASYNC).getCount(), gets + 1);
+		assertEquals(metrics.get(Operation.WRITE_ASYNC).getCount(), writes + 1);
+		assertEquals(metrics.get(Operation.DELETE_ASYNC).getCount(), deletes + 1);
+	}
+	
+	@Test
+	public void testSlowGetDocumentRecorded() throws Exception {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setSlowOperationThreshold(1);
+		config.connect("127.0.0.1");
+		try {
+			CouchbaseConnector connector = new CouchbaseConnector();
+			connector.setConfig(config);
+			char[] name = new char[2 * 1024 * 1024];
+			Arrays.fill(name, 'x');
+			connector.upsertDocument(null, new JavaMapDocument("metrics-slow", Collections.<String, Object>singletonMap("name", new String(name))), PersistTo.NONE, ReplicateTo.NONE);
+			config.getMetrics().getSlowOperations().clear();
+			
+			connector.getDocument(null, "metrics-slow", false, 0, false, 0);
+			
+			List<SlowOperation> slowOperations = config.getMetrics().getSlowOperations().getSlowOperations();
+			assertEquals(slowOperations.size(), 1);
+			assertEquals(slowOperations.get(0).getOperation(), Operation.GET);
+			assertEquals(slowOperations.get(0).getKey(), "metrics-slow");
+		} finally {
+			config.disconnect();
+		}
+	}
+	
+	private Object attribute(String type, String attribute) throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<ObjectName> names = server.queryNames(new ObjectName(ConnectorMetrics.JMX_DOMAIN + ":type=" + type + ",config=\"jmx-test\",*"), null);
+		assertEquals(names.size(), 1);
+		return server.getAttribute(names.iterator().next(), attribute);
+	}
+}
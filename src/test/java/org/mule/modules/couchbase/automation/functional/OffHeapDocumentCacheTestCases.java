@@ -0,0 +1,105 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.cache.OffHeapDocumentCache;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+public class OffHeapDocumentCacheTestCases {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] json(String id) {
+		return ("{\"name\":\"Name-" + id + "\"}").getBytes(UTF_8);
+	}
+	
+	@Test
+	public void testHitAndMiss() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(4096, 60);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		cache.put("user1", json("user1"), 10l, 0);
+		JavaMapDocument cached = cache.get("user1");
+		
+		MatcherAssert.assertThat(cached.getId(), Matchers.equalTo("user1"));
+		MatcherAssert.assertThat(cached.getCas(), Matchers.equalTo(10l));
+		MatcherAssert.assertThat(cached.getContent().get("name"), Matchers.equalTo((Object) "Name-user1"));
+		MatcherAssert.assertThat(cache.getHits(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(cache.getMisses(), Matchers.equalTo(1l));
+	}
+	
+	@Test
+	public void testDocumentSpanningBlocks() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(8192, 60);
+		char[] value = new char[1500];
+		Arrays.fill(value, 'x');
+		String name = new String(value);
+		cache.put("user1", ("{\"name\":\"" + name + "\"}").getBytes(UTF_8), 10l, 0);
+		
+		MatcherAssert.assertThat(cache.get("user1").getContent().get("name"), Matchers.equalTo((Object) name));
+		MatcherAssert.assertThat(cache.getUsedBytes(), Matchers.equalTo(1536l));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEvictionWhenFull() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(1024, 60);
+		cache.put("user1", json("user1"), 10l, 0);
+		cache.put("user2", json("user2"), 10l, 0);
+		cache.get("user1");
+		cache.put("user3", json("user3"), 10l, 0);
+		
+		MatcherAssert.assertThat(cache.get("user2"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.notNullValue());
+		MatcherAssert.assertThat(cache.getEvictions(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(cache.getUsedBytes(), Matchers.equalTo(1024l));
+	}
+	
+	@Test
+	public void testInvalidateReleasesMemory() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(4096, 60);
+		cache.put("user1", json("user1"), 10l, 0);
+		cache.invalidate("user1");
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.getUsedBytes(), Matchers.equalTo(0l));
+	}
+	
+	@Test
+	public void testExpiredEntry() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(4096, 0);
+		cache.put("user1", json("user1"), 10l, 0);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.size(), Matchers.equalTo(0));
+	}
+	
+	@Test
+	public void testReadBeforeInvalidateIsNotCached() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(4096, 60);
+		long readStamp = cache.readStamp();
+		cache.invalidate("user1");
+		cache.put("user1", json("user1"), 10l, 0, readStamp);
+		
+		MatcherAssert.assertThat(cache.get("user1"), Matchers.nullValue());
+		MatcherAssert.assertThat(cache.getStalePuts(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(cache.getUsedBytes(), Matchers.equalTo(0l));
+	}
+	
+	@Test
+	public void testOlderCasDoesNotReplaceNewer() {
+		OffHeapDocumentCache cache = new OffHeapDocumentCache(4096, 60);
+		cache.put("user1", json("user1"), 20l, 0);
+		cache.put("user1", json("user1"), 10l, 0);
+		
+		MatcherAssert.assertThat(cache.get("user1").getCas(), Matchers.equalTo(20l));
+		MatcherAssert.assertThat(cache.getStalePuts(), Matchers.equalTo(1l));
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.query.QueryResultIterator;
+import org.springframework.messaging.MessagingException;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subjects.PublishSubject;
+
+public class QueryResultIteratorTestCases {
+
+	private Map<String, Object> row(int index) {
+		return Collections.<String, Object>singletonMap("index", index);
+	}
+
+	private List<Map<String, Object>> rows(int count) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int index = 0; index < count; index++) {
+			rows.add(row(index));
+		}
+		return rows;
+	}
+
+	@Test
+	public void testIteratesAllRowsInBatches() {
+		QueryResultIterator iterator = new QueryResultIterator(Observable.from(rows(10)), 4, 1000);
+
+		int read = 0;
+		while (iterator.hasNext()) {
+			MatcherAssert.assertThat(iterator.next().get("index"), Matchers.equalTo((Object) read));
+			read++;
+		}
+		MatcherAssert.assertThat(read, Matchers.equalTo(10));
+	}
+
+	@Test
+	public void testQueryErrorRaisedAfterRows() {
+		QueryResultIterator iterator = new QueryResultIterator(Observable.from(rows(2))
+				.concatWith(Observable.<Map<String, Object>>error(new MessagingException("Failed to execute the N1QL Query"))), 4, 1000);
+
+		iterator.next();
+		iterator.next();
+		try {
+			iterator.hasNext();
+			throw new AssertionError("Expected query error");
+		} catch (MessagingException e) {
+			MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("Failed to execute"));
+		}
+	}
+
+	@Test
+	public void testCloseUnsubscribesFromResponse() {
+		PublishSubject<Map<String, Object>> response = PublishSubject.create();
+		QueryResultIterator iterator = new QueryResultIterator(response, 4, 1000);
+		response.onNext(row(0));
+
+		MatcherAssert.assertThat(iterator.next().get("index"), Matchers.equalTo((Object) 0));
+		iterator.close();
+
+		MatcherAssert.assertThat(response.hasObservers(), Matchers.equalTo(false));
+		MatcherAssert.assertThat(iterator.hasNext(), Matchers.equalTo(false));
+	}
+
+	@Test
+	public void testOverflowFailsInsteadOfBufferingAllRows() {
+		final AtomicInteger emitted = new AtomicInteger();
+		Observable<Map<String, Object>> response = Observable.create(new Observable.OnSubscribe<Map<String, Object>>() {
+			@Override
+			public void call(Subscriber<? super Map<String, Object>> subscriber) {
+				for (Map<String, Object> row : rows(100)) {
+					if (subscriber.isUnsubscribed()) return;
+					emitted.incrementAndGet();
+					subscriber.onNext(row);
+				}
+				subscriber.onCompleted();
+			}
+		});
+		QueryResultIterator iterator = new QueryResultIterator(response, 4, 1000);
+
+		int read = 0;
+		try {
+			while (iterator.hasNext()) {
+				iterator.next();
+				read++;
+			}
+			throw new AssertionError("Expected buffer overflow");
+		} catch (MessagingException e) {
+			MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("overflowed buffer of 4 rows"));
+			MatcherAssert.assertThat(e.getMessage(), Matchers.containsString("Raise Buffer Size"));
+		}
+		MatcherAssert.assertThat(read, Matchers.equalTo(8));
+		MatcherAssert.assertThat(emitted.get(), Matchers.equalTo(9));
+	}
+
+	@Test(expected=MessagingException.class)
+	public void testTimeoutWaitingForRows() {
+		QueryResultIterator iterator = new QueryResultIterator(Observable.<Map<String, Object>>never(), 4, 50);
+
+		iterator.hasNext();
+	}
+}
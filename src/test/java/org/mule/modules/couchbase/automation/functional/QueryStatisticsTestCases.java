@@ -0,0 +1,114 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.metrics.QueryStatementStatistics;
+import org.mule.modules.couchbase.metrics.QueryStatistics;
+
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.N1qlMetrics;
+
+public class QueryStatisticsTestCases {
+	
+	private static N1qlMetrics metrics(String executionTime, int resultCount) {
+		return new N1qlMetrics(JsonObject.create()
+				.put("elapsedTime", executionTime)
+				.put("executionTime", executionTime)
+				.put("resultCount", (long) resultCount)
+				.put("resultSize", resultCount * 100l));
+	}
+
+	@Test
+	public void testFingerprintReplacesLiterals() {
+		MatcherAssert.assertThat(QueryStatistics.fingerprint("SELECT *  FROM `default`\n WHERE state = 'DE' AND age > 30 AND name = $name LIMIT 10"), 
+				Matchers.equalTo("SELECT * FROM `default` WHERE state = ? AND age > ? AND name = $name LIMIT ?"));
+		MatcherAssert.assertThat(QueryStatistics.fingerprint("SELECT * FROM default WHERE id = \"user1\" AND city = 'it''s'"), 
+				Matchers.equalTo("SELECT * FROM default WHERE id = ? AND city = ?"));
+		MatcherAssert.assertThat(QueryStatistics.fingerprint("SELECT * FROM default WHERE state = $1"), 
+				Matchers.equalTo("SELECT * FROM default WHERE state = $1"));
+	}
+	
+	@Test
+	public void testMetricsAggregatedPerFingerprint() {
+		QueryStatistics statistics = new QueryStatistics();
+		statistics.record("SELECT * FROM default WHERE state = 'DE'", metrics("1.5ms", 2), true);
+		statistics.record("SELECT * FROM default WHERE state = 'NY'", metrics("1m2.5s", 3), true);
+		statistics.record("SELECT * FROM default WHERE state = 'CA'", null, false);
+		statistics.record("SELECT 1", metrics("250.5\u00b5s", 1), true);
+		
+		MatcherAssert.assertThat(statistics.getStatementCount(), Matchers.equalTo(2));
+		QueryStatementStatistics byState = statistics.get("SELECT * FROM default WHERE state = 'TX'");
+		MatcherAssert.assertThat(byState.getExecutions(), Matchers.equalTo(3l));
+		MatcherAssert.assertThat(byState.getErrors(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(byState.getExecutionMillis(), Matchers.equalTo(62501l));
+		MatcherAssert.assertThat(byState.getMaxExecutionMillis(), Matchers.equalTo(62500l));
+		MatcherAssert.assertThat(byState.getResultCount(), Matchers.equalTo(5l));
+		MatcherAssert.assertThat(byState.getResultSize(), Matchers.equalTo(500l));
+		
+		String[] top = statistics.getTopStatementsByExecutionTime();
+		MatcherAssert.assertThat(top.length, Matchers.equalTo(2));
+		MatcherAssert.assertThat(top[0], Matchers.startsWith("SELECT * FROM default WHERE state = ? Executions: 3"));
+		
+		statistics.reset();
+		MatcherAssert.assertThat(statistics.getStatementCount(), Matchers.equalTo(0));
+	}
+	
+	@Test
+	public void testSampledProfileExposed() {
+		QueryStatistics statistics = new QueryStatistics();
+		statistics.record("SELECT * FROM default", metrics("1ms", 1), true).setProfile("{\"#operator\":\"Sequence\"}");
+		
+		MatcherAssert.assertThat(statistics.getSampledProfiles(), Matchers.arrayContaining("SELECT * FROM default Profile: {\"#operator\":\"Sequence\"}"));
+	}
+	
+	@Test
+	public void testFirstAndEveryNthExecutionSampled() {
+		QueryStatistics statistics = new QueryStatistics();
+		
+		MatcherAssert.assertThat(statistics.sample("SELECT * FROM default WHERE id = 'user1'", 3), Matchers.equalTo(true));
+		MatcherAssert.assertThat(statistics.sample("SELECT * FROM default WHERE id = 'user2'", 3), Matchers.equalTo(false));
+		MatcherAssert.assertThat(statistics.sample("SELECT * FROM default WHERE id = 'user3'", 3), Matchers.equalTo(false));
+		MatcherAssert.assertThat(statistics.sample("SELECT * FROM default WHERE id = 'user4'", 3), Matchers.equalTo(true));
+		MatcherAssert.assertThat(statistics.sample("SELECT 1", 0), Matchers.equalTo(false));
+	}
+	
+	@Test
+	public void testConcurrentExecutionsSampledOnce() throws Exception {
+		final QueryStatistics statistics = new QueryStatistics();
+		final AtomicInteger sampled = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> callers = new ArrayList<Future<?>>();
+			for (int caller = 0; caller < 8; caller++) {
+				callers.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int i = 0; i < 300; i++) {
+							if(statistics.sample("SELECT * FROM default", 3)) sampled.incrementAndGet();
+						}
+					}
+				}));
+			}
+			for (Future<?> caller : callers) {
+				caller.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		MatcherAssert.assertThat(sampled.get(), Matchers.equalTo(800));
+	}
+}
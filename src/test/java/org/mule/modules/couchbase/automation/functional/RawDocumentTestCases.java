@@ -0,0 +1,61 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.RawFormat;
+import org.mule.modules.couchbase.model.WriteMode;
+
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+
+public class RawDocumentTestCases extends CouchbaseAbstractTestCase {
+
+	@Test
+	public void testGetRawJson() throws Exception {
+		Object content = getConnector().getRawDocument(null, "user1", RawFormat.JSON);
+		
+		MatcherAssert.assertThat(content, Matchers.instanceOf(String.class));
+		MatcherAssert.assertThat((String) content, Matchers.containsString("\"state\":\"DE\""));
+	}
+	
+	@Test
+	public void testGetRawMissingDocument() throws Exception {
+		assertNull(getConnector().getRawDocument(null, "user8", RawFormat.JSON));
+	}
+	
+	@Test
+	public void testWriteRawJsonReadAsMap() throws Exception {
+		JavaMapDocument written = getConnector().writeRawDocument(null, "user6", 
+				new ByteArrayInputStream("{\"name\":\"MyName\",\"state\":\"CA\"}".getBytes("UTF-8")), WriteMode.INSERT, RawFormat.JSON, -1, 0);
+		
+		assertEquals(written.getId(), "user6");
+		
+		JavaMapDocument returnDoc = getConnector().getDocument(null, "user6", false, 0, false, 0);
+		assertEquals(returnDoc.getCas(), written.getCas());
+		assertEquals(returnDoc.getContent().get("state").toString(), "CA");
+	}
+	
+	@Test(expected=DocumentAlreadyExistsException.class)
+	public void testWriteRawExistingDocumentInsertFailure() throws Exception {
+		getConnector().writeRawDocument(null, "user1", "{}", WriteMode.INSERT, RawFormat.JSON, -1, 0);
+	}
+	
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		byte[] bytes = new byte[] {0, 1, 2, 3, (byte) 255};
+		getConnector().writeRawDocument(null, "binary1", bytes, WriteMode.UPSERT, RawFormat.BINARY, -1, 0);
+		
+		Object content = getConnector().getRawDocument(null, "binary1", RawFormat.BINARY);
+		
+		assertEquals(Arrays.equals((byte[]) content, bytes), Boolean.TRUE);
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+import org.mule.modules.couchbase.metrics.CouchbaseEventListener;
+import org.mule.modules.couchbase.metrics.SdkEventMetrics;
+
+import com.couchbase.client.core.event.CouchbaseEvent;
+import com.couchbase.client.core.event.DefaultEventBus;
+import com.couchbase.client.core.event.EventBus;
+import com.couchbase.client.core.event.EventType;
+
+import rx.schedulers.Schedulers;
+
+public class SdkEventMetricsTestCases extends CouchbaseAbstractTestCase {
+	
+	private static class TestEvent implements CouchbaseEvent {
+		@Override
+		public EventType type() {
+			return EventType.SYSTEM;
+		}
+		@Override
+		public Map<String, Object> toMap() {
+			return Collections.<String, Object>singletonMap("test", true);
+		}
+	}
+
+	@Test
+	public void testEventsForwardedToListenerWithConfigName() {
+		DefaultEventBus eventBus = new DefaultEventBus(Schedulers.immediate());
+		final List<String> received = new ArrayList<String>();
+		SdkEventMetrics metrics = new SdkEventMetrics();
+		metrics.subscribe(eventBus, "localhost/default", new CouchbaseEventListener() {
+			@Override
+			public void onEvent(String configName, CouchbaseEvent event) {
+				received.add(configName + ":" + event.toMap());
+			}
+		});
+		
+		eventBus.publish(new TestEvent());
+		metrics.unsubscribe();
+		eventBus.publish(new TestEvent());
+		
+		MatcherAssert.assertThat(received, Matchers.contains("localhost/default:{test=true}"));
+	}
+	
+	@Test
+	public void testFailingListenerDoesNotStopEvents() {
+		DefaultEventBus eventBus = new DefaultEventBus(Schedulers.immediate());
+		final List<CouchbaseEvent> received = new ArrayList<CouchbaseEvent>();
+		SdkEventMetrics metrics = new SdkEventMetrics();
+		metrics.subscribe(eventBus, "localhost/default", new CouchbaseEventListener() {
+			@Override
+			public void onEvent(String configName, CouchbaseEvent event) {
+				received.add(event);
+				throw new IllegalStateException("failed");
+			}
+		});
+		
+		eventBus.publish(new TestEvent());
+		eventBus.publish(new TestEvent());
+		metrics.unsubscribe();
+		
+		MatcherAssert.assertThat(received.size(), Matchers.equalTo(2));
+	}
+	
+	public static class CountingEventListener implements CouchbaseEventListener {
+		
+		static final AtomicInteger RECEIVED = new AtomicInteger();
+		
+		@Override
+		public void onEvent(String configName, CouchbaseEvent event) {
+			if (event instanceof TestEvent) RECEIVED.incrementAndGet();
+		}
+	}
+	
+	@Test
+	public void testEventsDeliveredOncePerClusterAndBucket() throws Exception {
+		CountingEventListener.RECEIVED.set(0);
+		CouchbaseConnectorConfig first = newConfig();
+		first.setEventListenerClass(CountingEventListener.class.getName());
+		CouchbaseConnectorConfig second = newConfig();
+		second.setEventListenerClass(CountingEventListener.class.getName());
+		first.connect("127.0.0.1");
+		try {
+			second.connect("127.0.0.1");
+			EventBus eventBus = first.getClusterClient().getEnvironment().eventBus();
+			
+			eventBus.publish(new TestEvent());
+			awaitReceived(1);
+			second.disconnect();
+			eventBus.publish(new TestEvent());
+			awaitReceived(2);
+			first.disconnect();
+			eventBus.publish(new TestEvent());
+			Thread.sleep(200);
+			
+			assertEquals(CountingEventListener.RECEIVED.get(), 2);
+		} finally {
+			second.disconnect();
+			first.disconnect();
+		}
+	}
+	
+	private void awaitReceived(int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && CountingEventListener.RECEIVED.get() < expected; i++) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(200);
+		assertEquals(CountingEventListener.RECEIVED.get(), expected);
+	}
+}
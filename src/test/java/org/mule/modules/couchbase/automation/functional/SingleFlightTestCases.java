@@ -0,0 +1,178 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.cache.SingleFlight;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+import com.couchbase.client.java.document.RawJsonDocument;
+
+public class SingleFlightTestCases extends CouchbaseAbstractTestCase {
+	
+	private static final long CALLERS = 8;
+
+	@Test
+	public void testConcurrentCallsShareOneRequest() throws Exception {
+		final SingleFlight<String> singleFlight = new SingleFlight<String>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger executions = new AtomicInteger();
+		final Callable<String> request = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				executions.incrementAndGet();
+				release.await(10, TimeUnit.SECONDS);
+				return "value";
+			}
+		};
+		
+		int callers = 5;
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return singleFlight.execute("user1", request);
+					}
+				}));
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (singleFlight.getCoalesced() < callers - 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			
+			for (Future<String> result : results) {
+				MatcherAssert.assertThat(result.get(10, TimeUnit.SECONDS), Matchers.equalTo("value"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		MatcherAssert.assertThat(executions.get(), Matchers.equalTo(1));
+		MatcherAssert.assertThat(singleFlight.getRequests(), Matchers.equalTo(1l));
+		MatcherAssert.assertThat(singleFlight.getCoalesced(), Matchers.equalTo((long) callers - 1));
+	}
+	
+	@Test
+	public void testSequentialCallsAreNotCoalesced() {
+		SingleFlight<String> singleFlight = new SingleFlight<String>();
+		Callable<String> request = new Callable<String>() {
+			@Override
+			public String call() {
+				return "value";
+			}
+		};
+		singleFlight.execute("user1", request);
+		singleFlight.execute("user1", request);
+		
+		MatcherAssert.assertThat(singleFlight.getRequests(), Matchers.equalTo(2l));
+		MatcherAssert.assertThat(singleFlight.getCoalesced(), Matchers.equalTo(0l));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testExceptionIsRethrown() {
+		new SingleFlight<String>().execute("user1", new Callable<String>() {
+			@Override
+			public String call() {
+				throw new IllegalArgumentException("failed");
+			}
+		});
+	}
+	
+	@Test
+	public void testConcurrentGetDocumentsShareSingleFlightAcrossConfigs() throws Exception {
+		CouchbaseConnectorConfig first = newConfig();
+		first.setCoalesceGets(true);
+		CouchbaseConnectorConfig second = newConfig();
+		second.setCoalesceGets(true);
+		first.connect("127.0.0.1");
+		try {
+			second.connect("127.0.0.1");
+			MatcherAssert.assertThat(second.getCoalescedGets(), Matchers.sameInstance(first.getCoalescedGets()));
+			
+			MatcherAssert.assertThat(concurrentGets(first, second), Matchers.equalTo(CALLERS));
+		} finally {
+			second.disconnect();
+			first.disconnect();
+		}
+	}
+	
+	@Test
+	public void testConcurrentGetDocumentsCoalescedThroughOffHeapCache() throws Exception {
+		CouchbaseConnectorConfig config = newConfig();
+		config.setCoalesceGets(true);
+		config.setOffHeapCacheEnabled(true);
+		config.setOffHeapCacheSizeMb(1);
+		config.setOffHeapCacheTtlSeconds(60);
+		config.connect("127.0.0.1");
+		try {
+			long hits = config.getOffHeapDocumentCache().getHits();
+			long reads = concurrentGets(config, config);
+			
+			MatcherAssert.assertThat(reads + config.getOffHeapDocumentCache().getHits() - hits, Matchers.equalTo(CALLERS));
+			MatcherAssert.assertThat(config.getOffHeapDocumentCache().get("user1"), Matchers.notNullValue());
+		} finally {
+			config.getOffHeapDocumentCache().clear();
+			config.disconnect();
+		}
+	}
+	
+	/**
+	 * Gets user1 from several threads, alternating between connectors of given configs.
+	 * @return number of gets that went through the {@link SingleFlight}, either running or sharing a read from database.
+	 */
+	private long concurrentGets(CouchbaseConnectorConfig first, CouchbaseConnectorConfig second) throws Exception {
+		final CouchbaseConnector[] connectors = { new CouchbaseConnector(), new CouchbaseConnector() };
+		connectors[0].setConfig(first);
+		connectors[1].setConfig(second);
+		SingleFlight<RawJsonDocument> singleFlight = first.getCoalescedGets();
+		long before = singleFlight.getRequests() + singleFlight.getCoalesced();
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool((int) CALLERS);
+		try {
+			List<Future<JavaMapDocument>> results = new ArrayList<Future<JavaMapDocument>>();
+			for (int i = 0; i < CALLERS; i++) {
+				final CouchbaseConnector connector = connectors[i % 2];
+				results.add(executor.submit(new Callable<JavaMapDocument>() {
+					@Override
+					public JavaMapDocument call() throws Exception {
+						start.await(10, TimeUnit.SECONDS);
+						return connector.getDocument(null, "user1", false, 0, false, 0);
+					}
+				}));
+			}
+			start.countDown();
+			
+			JavaMapDocument expected = getConnector().getDocument(null, "user1", false, 0, false, 0);
+			for (Future<JavaMapDocument> result : results) {
+				JavaMapDocument document = result.get(10, TimeUnit.SECONDS);
+				MatcherAssert.assertThat(document.getId(), Matchers.equalTo("user1"));
+				MatcherAssert.assertThat(document.getCas(), Matchers.equalTo(expected.getCas()));
+				MatcherAssert.assertThat(document.getContent(), Matchers.equalTo(expected.getContent()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return singleFlight.getRequests() + singleFlight.getCoalesced() - before;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mule.modules.couchbase.metrics.ConnectorMetrics;
+import org.mule.modules.couchbase.metrics.Operation;
+import org.mule.modules.couchbase.metrics.SlowOperation;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+
+public class SlowOperationLogTestCases {
+	
+	private static long startedAgo(long millis) {
+		return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	@Test
+	public void testOnlySlowOperationsRecorded() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		metrics.getSlowOperations().configure("default", 100, 10, false);
+		JavaMapDocument document = new JavaMapDocument("user1", Collections.<String, Object>singletonMap("state", "DE"));
+		
+		metrics.record(Operation.GET, System.nanoTime(), true, "user2", null, null, 0);
+		metrics.record(Operation.UPDATE, startedAgo(200), true, "user1", document, null, 3);
+		
+		List<SlowOperation> slowOperations = metrics.getSlowOperations().getSlowOperations();
+		MatcherAssert.assertThat(slowOperations.size(), Matchers.equalTo(1));
+		SlowOperation slow = slowOperations.get(0);
+		MatcherAssert.assertThat(slow.getOperation(), Matchers.equalTo(Operation.UPDATE));
+		MatcherAssert.assertThat(slow.getBucket(), Matchers.equalTo("default"));
+		MatcherAssert.assertThat(slow.getKey(), Matchers.equalTo("user1"));
+		MatcherAssert.assertThat(slow.getPayloadBytes(), Matchers.equalTo((long) "{\"state\":\"DE\"}".length()));
+		MatcherAssert.assertThat(slow.getRetries(), Matchers.equalTo(3));
+		MatcherAssert.assertThat(slow.getLatencyMillis(), Matchers.greaterThanOrEqualTo(200l));
+		MatcherAssert.assertThat(metrics.get(Operation.UPDATE).getCount(), Matchers.equalTo(1l));
+	}
+	
+	@Test
+	public void testDisabledByDefault() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		metrics.record(Operation.GET, startedAgo(1000), true, "user1", null, null, 0);
+		
+		MatcherAssert.assertThat(metrics.getSlowOperations().getCount(), Matchers.equalTo(0l));
+		MatcherAssert.assertThat(metrics.getSlowOperations().getThresholdMillis(), Matchers.equalTo(0l));
+	}
+	
+	@Test
+	public void testQueryStatementHashed() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		metrics.getSlowOperations().configure("default", 1, 10, false);
+		String statement = "SELECT * FROM default WHERE state = 'DE'";
+		
+		metrics.record(Operation.QUERY, startedAgo(10), false, statement, null, null, 1);
+		
+		SlowOperation slow = metrics.getSlowOperations().getSlowOperations().get(0);
+		MatcherAssert.assertThat(slow.getKey(), Matchers.equalTo("statement#" + Integer.toHexString(statement.hashCode())));
+		MatcherAssert.assertThat(slow.isSuccess(), Matchers.equalTo(false));
+		MatcherAssert.assertThat(slow.getPayloadBytes(), Matchers.equalTo(-1l));
+	}
+	
+	@Test
+	public void testLogKeepsMostRecentEntries() {
+		ConnectorMetrics metrics = new ConnectorMetrics();
+		metrics.getSlowOperations().configure("default", 1, 3, false);
+		for (int i = 1; i <= 5; i++) {
+			metrics.record(Operation.GET, startedAgo(10), true, "user" + i, null, null, 0);
+		}
+		
+		MatcherAssert.assertThat(metrics.getSlowOperations().getCount(), Matchers.equalTo(5l));
+		String[] entries = metrics.getSlowOperations().getEntries();
+		MatcherAssert.assertThat(entries.length, Matchers.equalTo(3));
+		MatcherAssert.assertThat(entries[0], Matchers.containsString("key=user5"));
+		MatcherAssert.assertThat(entries[2], Matchers.containsString("key=user3"));
+		
+		metrics.getSlowOperations().clear();
+		MatcherAssert.assertThat(metrics.getSlowOperations().getEntries().length, Matchers.equalTo(0));
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * The software in this package is published under the terms of the Apache v2.0 license,
+ * a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.modules.couchbase.automation.functional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
+import org.mule.modules.couchbase.model.JavaMapDocument;
+import org.mule.modules.couchbase.model.SubdocMutation;
+import org.mule.modules.couchbase.model.SubdocMutationType;
+import org.mule.modules.couchbase.model.SubdocResult;
+
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+
+public class SubdocTestCases extends CouchbaseAbstractTestCase {
+
+	@Test
+	public void testLookupIn() {
+		SubdocResult result = getConnector().lookupInDocument(null, "user1", Arrays.asList("state", "name", "missing"), Arrays.asList("type", "other"));
+		
+		assertNotNull(result.getCas());
+		assertEquals(result.getValues().get("state").toString(), "DE");
+		assertEquals(result.getValues().get("name").toString(), "User1");
+		assertNull(result.getValues().get("missing"));
+		assertEquals(result.getValues().get("type"), (Object) Boolean.TRUE);
+		assertEquals(result.getValues().get("other"), (Object) Boolean.FALSE);
+	}
+	
+	@Test(expected=DocumentDoesNotExistException.class)
+	public void testLookupInNonExistantDocument() {
+		getConnector().lookupInDocument(null, "user8", Arrays.asList("state"), null);
+	}
+	
+	@Test
+	public void testMutateIn() {
+		List<SubdocMutation> mutations = new ArrayList<SubdocMutation>();
+		mutations.add(new SubdocMutation(SubdocMutationType.UPSERT, "city", "anything"));
+		mutations.add(new SubdocMutation(SubdocMutationType.REMOVE, "website", null));
+		mutations.add(new SubdocMutation(SubdocMutationType.ARRAY_APPEND, "address", "street 1"));
+		SubdocMutation counter = new SubdocMutation(SubdocMutationType.COUNTER, "visits", null);
+		counter.setDelta(5);
+		mutations.add(counter);
+		
+		SubdocResult result = getConnector().mutateInDocument(null, "user1", mutations, -1, 0);
+		
+		assertEquals(result.getValues().get("visits"), (Object) Long.valueOf(5));
+		
+		JavaMapDocument returnDoc = getConnector().getDocument(null, "user1", false, 0, false, 0);
+		assertEquals(returnDoc.getCas(), result.getCas());
+		assertEquals(returnDoc.getContent().get("city").toString(), "anything");
+		assertEquals(returnDoc.getContent().containsKey("website"), Boolean.FALSE);
+		assertEquals(((List<?>) returnDoc.getContent().get("address")).size(), 1);
+		assertEquals(returnDoc.getContent().get("state").toString(), "DE");
+	}
+	
+	@Test(expected=CASMismatchException.class)
+	public void testMutateInCasMismatch() {
+		List<SubdocMutation> mutations = new ArrayList<SubdocMutation>();
+		mutations.add(new SubdocMutation(SubdocMutationType.UPSERT, "city", "anything"));
+		
+		getConnector().mutateInDocument(null, "user1", mutations, -1, 1l);
+	}
+}
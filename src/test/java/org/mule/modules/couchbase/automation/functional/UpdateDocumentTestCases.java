@@ -4,13 +4,23 @@
  */
 package org.mule.modules.couchbase.automation.functional;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.expression.ExpressionManager;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
 import org.mule.modules.couchbase.model.JavaMapDocument;
 
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.error.CASMismatchException;
 import com.couchbase.client.java.error.DocumentDoesNotExistException;
 
 public class UpdateDocumentTestCases extends CouchbaseAbstractTestCase {
@@ -26,7 +36,7 @@ public class UpdateDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","non-existant-user");
 		javaMapDocument.setContent(content);
 		
-		getConnector().updateDocument(muleEvent, javaMapDocument);
+		getConnector().updateDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE, false, 5, 10, null);
 	}
 
 	@Test
@@ -40,7 +50,7 @@ public class UpdateDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","MyName");
 		javaMapDocument.setContent(content);
 		
-		JavaMapDocument returnDoc = getConnector().updateDocument(muleEvent, javaMapDocument);
+		JavaMapDocument returnDoc = getConnector().updateDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE, false, 5, 10, null);
 		
 		assertNotNull(returnDoc.getCas());
 		//Loaded document has state but when we replace, it should not be there
@@ -48,4 +58,134 @@ public class UpdateDocumentTestCases extends CouchbaseAbstractTestCase {
 		assertEquals(returnDoc.getId(), "user1");
 		assertEquals(returnDoc.getContent().get("name").toString(), "MyName");
 	}
-}
\ No newline at end of file
+	
+	private JavaMapDocument staleDocument(String id) {
+		Map<String, Object> original = new HashMap<String, Object>();
+		original.put("name", "Original");
+		original.put("state", "DE");
+		JavaMapDocument written = getConnector().upsertDocument(null, new JavaMapDocument(id, original), PersistTo.NONE, ReplicateTo.NONE);
+		getConnector().upsertDocument(null, written.clone(), PersistTo.NONE, ReplicateTo.NONE);
+		
+		Map<String, Object> change = new HashMap<String, Object>();
+		change.put("name", "Changed");
+		JavaMapDocument stale = new JavaMapDocument(id, change);
+		stale.setCas(written.getCas());
+		return stale;
+	}
+	
+	@Test
+	public void testCasMismatchRetryMergesContent() {
+		long retries = getConnector().getCasRetryMetrics().getRetries();
+		
+		JavaMapDocument returnDoc = getConnector().updateDocument(null, staleDocument("casretry1"), PersistTo.NONE, ReplicateTo.NONE, true, 5, 1, null);
+		
+		assertEquals(returnDoc.getContent().get("name").toString(), "Changed");
+		assertEquals(returnDoc.getContent().get("state").toString(), "DE");
+		assertEquals(getConnector().getCasRetryMetrics().getRetries(), retries + 1);
+	}
+	
+	@Test(expected=CASMismatchException.class)
+	public void testCasMismatchWithoutRetriesLeft() {
+		getConnector().updateDocument(null, staleDocument("casretry2"), PersistTo.NONE, ReplicateTo.NONE, true, 0, 1, null);
+	}
+	
+	@Test
+	public void testCasMismatchWithoutRetriesNotCountedAsExhausted() {
+		long exhausted = getConnector().getCasRetryMetrics().getExhausted();
+		try {
+			getConnector().updateDocument(null, staleDocument("casretry4"), PersistTo.NONE, ReplicateTo.NONE, true, 0, 1, null);
+			throw new AssertionError("Expected CASMismatchException");
+		} catch (CASMismatchException e) {
+			assertEquals(getConnector().getCasRetryMetrics().getExhausted(), exhausted);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> T stub(Class<T> type, final InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if(method.getName().equals("equals")) return proxy == args[0];
+				if(method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+				if(method.getName().equals("toString")) return "stub " + method.getDeclaringClass().getSimpleName();
+				return handler.invoke(proxy, method, args);
+			}
+		});
+	}
+	
+	@Test
+	public void testCasMismatchRetryWithExpression() {
+		final Map<String, Object> flowVars = new HashMap<String, Object>();
+		final MuleEvent muleEvent = stub(MuleEvent.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if(method.getName().equals("setFlowVariable")) flowVars.put((String) args[0], args[1]);
+				if(method.getName().equals("getFlowVariable")) return flowVars.get(args[0]);
+				if(method.getName().equals("removeFlowVariable")) flowVars.remove(args[0]);
+				return null;
+			}
+		});
+		final ExpressionManager expressionManager = stub(ExpressionManager.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				assertEquals(args[1], (Object) muleEvent);
+				JavaMapDocument current = (JavaMapDocument) flowVars.get("currentDocument");
+				Map<String, Object> content = new HashMap<String, Object>(current.getContent());
+				content.put("name", current.getContent().get("name") + "-retried");
+				return content;
+			}
+		});
+		MuleContext muleContext = stub(MuleContext.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getExpressionManager") ? expressionManager : null;
+			}
+		});
+		
+		MuleContext previous = getConnector().getMuleContext();
+		getConnector().setMuleContext(muleContext);
+		try {
+			JavaMapDocument returnDoc = getConnector().updateDocument(muleEvent, staleDocument("casretry3"), PersistTo.NONE, ReplicateTo.NONE, true, 5, 1, 
+					"#[flowVars.currentDocument.content + ['name': flowVars.currentDocument.content.name + '-retried']]");
+			
+			assertEquals(returnDoc.getContent().get("name").toString(), "Original-retried");
+			assertEquals(returnDoc.getContent().get("state").toString(), "DE");
+			assertEquals(flowVars.containsKey("currentDocument"), false);
+		} finally {
+			getConnector().setMuleContext(previous);
+		}
+	}
+	
+	@Test
+	public void testCasMismatchRetryEvaluatesRealExpression() throws MuleException {
+		MuleContext muleContext = startMuleContext();
+		MuleContext previous = getConnector().getMuleContext();
+		getConnector().setMuleContext(muleContext);
+		try {
+			MuleEvent muleEvent = newMuleEvent(muleContext, "retry");
+			JavaMapDocument returnDoc = getConnector().updateDocument(muleEvent, staleDocument("casretry5"), PersistTo.NONE, ReplicateTo.NONE, true, 5, 1, 
+					"#[['name': flowVars.currentDocument.content.name + '-retried', 'state': flowVars.currentDocument.content.state]]");
+			
+			assertEquals(returnDoc.getContent().get("name").toString(), "Original-retried");
+			assertEquals(returnDoc.getContent().get("state").toString(), "DE");
+			assertNull(muleEvent.getFlowVariable("currentDocument"));
+		} finally {
+			getConnector().setMuleContext(previous);
+			muleContext.dispose();
+		}
+	}
+	
+	@Test
+	public void testNonExistantDocumentKeepsCause() {
+		JavaMapDocument javaMapDocument = new JavaMapDocument();
+		javaMapDocument.setId("non-existant-user");
+		javaMapDocument.setContent(new HashMap<String, Object>());
+		
+		try {
+			getConnector().updateDocument(null, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE, false, 5, 10, null);
+			throw new AssertionError("Expected DocumentDoesNotExistException");
+		} catch (DocumentDoesNotExistException e) {
+			assertNotNull(e.getCause());
+		}
+	}
+}
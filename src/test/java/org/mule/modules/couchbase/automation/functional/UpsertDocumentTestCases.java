@@ -11,6 +11,9 @@ import org.junit.Test;
 import org.mule.modules.couchbase.automation.runner.CouchbaseAbstractTestCase;
 import org.mule.modules.couchbase.model.JavaMapDocument;
 
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+
 public class UpsertDocumentTestCases extends CouchbaseAbstractTestCase {
 
 	@Test
@@ -25,7 +28,7 @@ public class UpsertDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("state","CA");
 		javaMapDocument.setContent(content);
 		
-		JavaMapDocument returnDoc = getConnector().upsertDocument(muleEvent, javaMapDocument);
+		JavaMapDocument returnDoc = getConnector().upsertDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE);
 		
 		assertNotNull(returnDoc.getCas());
 		assertEquals(returnDoc.getId(), "user6");
@@ -44,7 +47,7 @@ public class UpsertDocumentTestCases extends CouchbaseAbstractTestCase {
 		content.put("name","MyName");
 		javaMapDocument.setContent(content);
 		
-		JavaMapDocument returnDoc = getConnector().upsertDocument(muleEvent, javaMapDocument);
+		JavaMapDocument returnDoc = getConnector().upsertDocument(muleEvent, javaMapDocument, PersistTo.NONE, ReplicateTo.NONE);
 		
 		assertNotNull(returnDoc.getCas());
 		//Loaded document has state but when we replace, it should not be there
@@ -52,5 +55,18 @@ public class UpsertDocumentTestCases extends CouchbaseAbstractTestCase {
 		assertEquals(returnDoc.getId(), "user1");
 		assertEquals(returnDoc.getContent().get("name").toString(), "MyName");
 	}
+	
+	@Test
+	public void testDurableUpsert() {
+		org.mule.api.MuleEvent muleEvent = null;
+		
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("name","Durable");
+		
+		JavaMapDocument returnDoc = getConnector().upsertDocument(muleEvent, new JavaMapDocument("durable1", content), PersistTo.MASTER, ReplicateTo.NONE);
+		
+		assertNotNull(returnDoc.getCas());
+		assertEquals(getConnector().getDocument(muleEvent, "durable1", false, 0, false, 0).getContent().get("name").toString(), "Durable");
+	}
 
-}
\ No newline at end of file
+}
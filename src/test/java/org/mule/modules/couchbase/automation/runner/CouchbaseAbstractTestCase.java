@@ -7,11 +7,23 @@ package org.mule.modules.couchbase.automation.runner;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Properties;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Before;
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+import org.mule.MessageExchangePattern;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.config.DefaultMuleConfiguration;
+import org.mule.config.builders.DefaultsConfigurationBuilder;
+import org.mule.construct.Flow;
+import org.mule.context.DefaultMuleContextFactory;
 import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.config.CouchbaseConnectorConfig;
 import org.mule.tools.devkit.ctf.junit.AbstractTestCase;
 
 import com.couchbase.mock.DocumentLoader;
@@ -31,6 +43,37 @@ public abstract class CouchbaseAbstractTestCase extends AbstractTestCase<Couchba
 	}
 	
 	
+	/**
+	 * @return config pointing at the mock cluster, to be set up and connected to 127.0.0.1 by the test, which must also disconnect it.
+	 */
+	protected CouchbaseConnectorConfig newConfig(){
+		CouchbaseConnectorConfig config = new CouchbaseConnectorConfig();
+		config.setBootstrapHttpDirectPort(FunctionalTestSuite.httpPort);
+		config.setBootstrapCarrierDirectPort(FunctionalTestSuite.carrierPort);
+		config.setBucketName("default");
+		// mock cluster has no query service to create the primary index
+		config.setEnsurePrimaryIndex(false);
+		return config;
+	}
+	
+	/**
+	 * @return started Mule context evaluating real expressions, working under target, to be disposed by the test.
+	 */
+	protected MuleContext startMuleContext() throws MuleException{
+		DefaultMuleConfiguration configuration = new DefaultMuleConfiguration();
+		configuration.setWorkingDirectory("target/.mule");
+		MuleContext muleContext = new DefaultMuleContextFactory().createMuleContext(new DefaultsConfigurationBuilder(), new Properties(), configuration);
+		muleContext.start();
+		return muleContext;
+	}
+	
+	/**
+	 * @return request-response event of a test flow carrying given payload.
+	 */
+	protected MuleEvent newMuleEvent(MuleContext muleContext, Object payload) throws MuleException{
+		return new DefaultMuleEvent(new DefaultMuleMessage(payload, muleContext), MessageExchangePattern.REQUEST_RESPONSE, new Flow("test", muleContext));
+	}
+	
 	public void assertNotNull(Object value){
 		MatcherAssert.assertThat(value, Matchers.notNullValue());
 	}
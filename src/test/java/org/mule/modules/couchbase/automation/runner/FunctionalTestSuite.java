@@ -21,10 +21,26 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.mule.modules.couchbase.CouchbaseConnector;
+import org.mule.modules.couchbase.automation.functional.AsyncDocumentTestCases;
+import org.mule.modules.couchbase.automation.functional.BulkGetDocumentsTestCases;
+import org.mule.modules.couchbase.automation.functional.BulkWriteDocumentsTestCases;
+import org.mule.modules.couchbase.automation.functional.CacheSettingsTestCases;
+import org.mule.modules.couchbase.automation.functional.CounterTestCases;
 import org.mule.modules.couchbase.automation.functional.DeleteDocumentTestCases;
+import org.mule.modules.couchbase.automation.functional.DocumentCacheTestCases;
 import org.mule.modules.couchbase.automation.functional.ExecuteQueryTestCase;
 import org.mule.modules.couchbase.automation.functional.GetDocumentTestCases;
 import org.mule.modules.couchbase.automation.functional.InsertDocumentTestCases;
+import org.mule.modules.couchbase.automation.functional.JavaMapDocumentTestCases;
+import org.mule.modules.couchbase.automation.functional.MetricsTestCases;
+import org.mule.modules.couchbase.automation.functional.OffHeapDocumentCacheTestCases;
+import org.mule.modules.couchbase.automation.functional.QueryResultIteratorTestCases;
+import org.mule.modules.couchbase.automation.functional.QueryStatisticsTestCases;
+import org.mule.modules.couchbase.automation.functional.RawDocumentTestCases;
+import org.mule.modules.couchbase.automation.functional.SdkEventMetricsTestCases;
+import org.mule.modules.couchbase.automation.functional.SingleFlightTestCases;
+import org.mule.modules.couchbase.automation.functional.SlowOperationLogTestCases;
+import org.mule.modules.couchbase.automation.functional.SubdocTestCases;
 import org.mule.modules.couchbase.automation.functional.UnlockDocumentTestCases;
 import org.mule.modules.couchbase.automation.functional.UpdateDocumentTestCases;
 import org.mule.modules.couchbase.automation.functional.UpsertDocumentTestCases;
@@ -49,7 +65,23 @@ InsertDocumentTestCases.class,
 UpsertDocumentTestCases.class,
 DeleteDocumentTestCases.class,
 UnlockDocumentTestCases.class,
-ExecuteQueryTestCase.class
+ExecuteQueryTestCase.class,
+QueryResultIteratorTestCases.class,
+BulkGetDocumentsTestCases.class,
+BulkWriteDocumentsTestCases.class,
+RawDocumentTestCases.class,
+SubdocTestCases.class,
+DocumentCacheTestCases.class,
+OffHeapDocumentCacheTestCases.class,
+CacheSettingsTestCases.class,
+SingleFlightTestCases.class,
+JavaMapDocumentTestCases.class,
+AsyncDocumentTestCases.class,
+CounterTestCases.class,
+MetricsTestCases.class,
+SdkEventMetricsTestCases.class,
+SlowOperationLogTestCases.class,
+QueryStatisticsTestCases.class
 })
 
 public class FunctionalTestSuite {
@@ -99,11 +131,11 @@ public class FunctionalTestSuite {
 	}
 
 	protected static void createClient() {
-		client = CouchbaseClusterClient.get();
 		CouchbaseConnectorConfig config = new CouchbaseConnectorConfig();
 		config.setBootstrapHttpDirectPort(httpPort);
 		config.setBootstrapCarrierDirectPort(carrierPort);
-		cluster = client.createCluster("127.0.0.1", config);
+		client = CouchbaseClusterClient.connect("127.0.0.1", config);
+		cluster = client.getCluster();
 		bucket = cluster.openBucket("default");
 	}
 
@@ -114,6 +146,8 @@ public class FunctionalTestSuite {
 		createMock("default", "");
 		getPortInfo("default");
 		createClient();
+		System.setProperty("couchbase.mock.httpPort", String.valueOf(httpPort));
+		System.setProperty("couchbase.mock.carrierPort", String.valueOf(carrierPort));
 		ConnectorTestContext.initialize(CouchbaseConnector.class);
 	}
 
@@ -122,11 +156,10 @@ public class FunctionalTestSuite {
 		if (cluster != null) {
 			System.out.println("Stop cluster");
 			bucket.close();
-			cluster.disconnect();
 		}
 		if(client.isConnected()){
 			System.out.println("Disconnect client");
-			client.disconnectCluster();
+			client.disconnect();
 		}
 		if (couchbaseMock != null) {
 			System.out.println("Stop mock");